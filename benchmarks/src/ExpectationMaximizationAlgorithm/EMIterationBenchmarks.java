@@ -0,0 +1,50 @@
+package ExpectationMaximizationAlgorithm;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * The cost of one EM iteration over synthetic data of 10^3 to 10^7 points: the separate EStep, MStep and
+ * LogLihood of EM with their n x 3 expectations, the fused EMKernel pass, and ParallelEM on the common pool.
+ * The GC profiler shows what the expectations array costs in allocation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@State(Scope.Benchmark)
+public class EMIterationBenchmarks {
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    public int n;
+
+    private double[] data;
+    private double[] theta;
+    private double[] nextTheta;
+
+    @Setup
+    public void setUp() {
+        data = EMBenchmark.sample(n, new Random(312));
+        theta = new double[]{data[0], data[n / 2 - 1], data[n - 1]};
+        nextTheta = new double[3];
+    }
+
+    @Benchmark
+    public double reference() {
+        double[][] expectations = new double[n][3];
+        EM.EStep(expectations, theta, data);
+        return EM.MStep(expectations, nextTheta, data);
+    }
+
+    @Benchmark
+    public double fused() {
+        return EMKernel.iterate(data, theta, nextTheta);
+    }
+
+    @Benchmark
+    public double parallel() {
+        return ParallelEM.iterate(data, theta, nextTheta, ForkJoinPool.commonPool());
+    }
+}
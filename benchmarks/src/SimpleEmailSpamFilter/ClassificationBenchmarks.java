@@ -0,0 +1,67 @@
+package SimpleEmailSpamFilter;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Per email latency on data/test, sampled over every email in turn: tokenSet alone, NaiveBayesModel.isSpam
+ * reading the file, and isSpam on an email already in memory, which leaves the file system out.
+ *
+ * Run from the repository root, or set -p data=... to the data directory.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class ClassificationBenchmarks {
+    @Param("src/SimpleEmailSpamFilter/data")
+    public String data;
+
+    private NaiveBayesModel model;
+    private File[] emails;
+    private byte[][] contents;
+    private int next = 0;
+
+    @Setup
+    public void setUp() throws IOException {
+        model = NaiveBayesModel.train(data + "/train/ham", data + "/train/spam", 1.0);
+        emails = new File(data + "/test").listFiles();
+        if (emails == null || emails.length == 0) {
+            throw new IllegalStateException("No test data under " + new File(data).getAbsolutePath());
+        }
+        Arrays.sort(emails);
+        contents = new byte[emails.length][];
+        for (int i = 0; i < emails.length; i++) {
+            contents[i] = Files.readAllBytes(emails[i].toPath());
+        }
+    }
+
+    // the emails in turn, so that every sample is one email
+    private int nextEmail() {
+        int i = next;
+        next = i + 1 == emails.length ? 0 : i + 1;
+        return i;
+    }
+
+    @Benchmark
+    public Set<String> tokenSet() throws IOException {
+        return ExperimentMain.tokenSet(emails[nextEmail()]);
+    }
+
+    @Benchmark
+    public boolean isSpamFile() throws IOException {
+        return model.isSpam(emails[nextEmail()]);
+    }
+
+    @Benchmark
+    public boolean isSpamInMemory() {
+        byte[] email = contents[nextEmail()];
+        return model.isSpam(email, email.length);
+    }
+}
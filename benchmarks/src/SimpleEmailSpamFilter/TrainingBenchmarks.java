@@ -0,0 +1,85 @@
+package SimpleEmailSpamFilter;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.*;
+
+import java.io.*;
+import java.util.concurrent.*;
+
+/**
+ * Training throughput on data/train: the map based calculatePwOver of ExperimentMain, the parallel map of
+ * ParallelTrainer, and NaiveBayesModel.train on one thread and on all of them. Each reports trainings per second,
+ * and through the documents counter the emails per second.
+ *
+ * Run from the repository root, or set -p data=... to the data directory.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TrainingBenchmarks {
+    private static final double SMOOTH = 1.0;
+
+    @Param("src/SimpleEmailSpamFilter/data")
+    public String data;
+
+    private String ham;
+    private String spam;
+    private int documents;
+    private ForkJoinPool single;
+
+    /**
+     * Emails trained on, reported per second next to the trainings.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Documents {
+        public long documents;
+    }
+
+    @Setup
+    public void setUp() {
+        ham = data + "/train/ham";
+        spam = data + "/train/spam";
+        File[] hamFiles = new File(ham).listFiles();
+        File[] spamFiles = new File(spam).listFiles();
+        if (hamFiles == null || spamFiles == null) {
+            throw new IllegalStateException("No training data under " + new File(data).getAbsolutePath());
+        }
+        documents = hamFiles.length + spamFiles.length;
+        single = new ForkJoinPool(1);
+    }
+
+    @TearDown
+    public void tearDown() {
+        single.shutdown();
+    }
+
+    @Benchmark
+    public void experimentMain(Documents counter, Blackhole blackhole) {
+        blackhole.consume(ExperimentMain.calculatePwOver(ham));
+        blackhole.consume(ExperimentMain.calculatePwOver(spam));
+        counter.documents += documents;
+    }
+
+    @Benchmark
+    public void parallelTrainer(Documents counter, Blackhole blackhole) {
+        blackhole.consume(ParallelTrainer.calculatePwOver(ham, SMOOTH));
+        blackhole.consume(ParallelTrainer.calculatePwOver(spam, SMOOTH));
+        counter.documents += documents;
+    }
+
+    @Benchmark
+    public NaiveBayesModel modelOneThread(Documents counter) {
+        counter.documents += documents;
+        return NaiveBayesModel.train(ham, spam, SMOOTH, single);
+    }
+
+    @Benchmark
+    public NaiveBayesModel modelAllThreads(Documents counter) {
+        counter.documents += documents;
+        return NaiveBayesModel.train(ham, spam, SMOOTH);
+    }
+}
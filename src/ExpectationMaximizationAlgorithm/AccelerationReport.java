@@ -0,0 +1,77 @@
+package ExpectationMaximizationAlgorithm;
+
+import java.io.*;
+import java.nio.file.*;
+
+/**
+ * Compares plain EM iterations with SQUAREM accelerated ones on text data sets, all stopping once no parameter
+ * moves by EM.EPSILON or more: the loop of EM itself, and GaussianMixture with EM's model (means only) and with
+ * every parameter learned. Reports the iterations, the passes over the data, the time per fit and the observed
+ * log likelihood reached.
+ *
+ * Usage: AccelerationReport dataset.txt... (for example the data sets of EMtestdata.zip)
+ */
+public class AccelerationReport {
+    private static final int ROUNDS = 200;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: AccelerationReport dataset.txt...");
+            System.exit(1);
+        }
+        StoppingRule rule = StoppingRule.parameterChange(EM.EPSILON);
+        System.out.println("data set\tmethod\t\titerations\tpasses\tus/fit\tlog likelihood");
+        for (String arg : args) {
+            double[] data = DatasetConverter.read(Paths.get(arg));
+            String name = Paths.get(arg).getFileName().toString();
+
+            int[] emIterations = new int[1];
+            double emMicros = time(() -> emIterations[0] = emLoop(data, rule));
+            System.out.printf("%s\tEM loop\t\t%d\t\t%d\t%.1f\n", name, emIterations[0], emIterations[0], emMicros);
+
+            GaussianMixture means = GaussianMixture.unitVarianceThreeComponents().stopWhen(rule);
+            report(name, "means, plain", data, means);
+            report(name, "means, SQUAREM", data, GaussianMixture.unitVarianceThreeComponents().stopWhen(rule)
+                    .accelerate());
+            report(name, "all, plain", data, new GaussianMixture(3).stopWhen(rule));
+            report(name, "all, SQUAREM", data, new GaussianMixture(3).stopWhen(rule).accelerate());
+        }
+    }
+
+    private static void report(String name, String method, double[] data, GaussianMixture mixture) {
+        GaussianMixture.Fit[] fit = new GaussianMixture.Fit[1];
+        double micros = time(() -> fit[0] = mixture.fit(data));
+        System.out.printf("%s\t%s\t%d\t\t%d\t%.1f\t%.5f\n", name, method, fit[0].iterations, fit[0].passes, micros,
+                fit[0].logLikelihood);
+    }
+
+    // the loop of EM.main, without the printing; returns the number of iterations, up to EM.MAX_ITERATIONS and
+    // including the one that diverged
+    private static int emLoop(double[] data, StoppingRule rule) {
+        double[] currTheta = GaussianMixture.unitVarianceThreeComponents().initialMeans(data);
+        double[] nextTheta = new double[3];
+        for (int iteration = 1; ; iteration++) {
+            double[] stats = new double[EMKernel.STATS];
+            EMKernel.accumulate(data, 0, data.length, currTheta, stats);
+            double log = EMKernel.maximize(stats, data.length, nextTheta);
+            boolean stopped = StoppingRule.diverged(nextTheta, log)
+                    || rule.converged(iteration, currTheta, nextTheta, Double.NaN, log);
+            System.arraycopy(nextTheta, 0, currTheta, 0, 3);
+            if (stopped || iteration >= EM.MAX_ITERATIONS) {
+                return iteration;
+            }
+        }
+    }
+
+    // mean microseconds per run, after as many runs of warm up
+    private static double time(Runnable fit) {
+        for (int i = 0; i < ROUNDS; i++) {
+            fit.run();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            fit.run();
+        }
+        return (System.nanoTime() - start) / 1e3 / ROUNDS;
+    }
+}
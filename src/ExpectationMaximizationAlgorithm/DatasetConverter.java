@@ -0,0 +1,212 @@
+package ExpectationMaximizationAlgorithm;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+
+/**
+ * Converts a text data set into the flat little-endian double file MappedDataset reads, or reads it into memory.
+ *
+ * Two text formats are read: the one EM reads (the number of points n, then n points, separated by whitespace),
+ * and the files of EMtestdata.zip (dataset1.txt, ...), whose lines of prose come before the points and which do
+ * not give their number. Lines before the first number whose first word is not a number are skipped. A first
+ * pass counts the numbers; the first one is the number of points when it is an integer that counts the others,
+ * and else a point. A second pass streams the points, so the text file may be larger than the memory.
+ *
+ * Usage: DatasetConverter input.txt output.bin
+ */
+public class DatasetConverter {
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: DatasetConverter input.txt output.bin");
+            System.exit(1);
+        }
+        long n = convert(Paths.get(args[0]), Paths.get(args[1]));
+        System.out.println(n + " points written to " + args[1]);
+    }
+
+    /**
+     * Convert a text data set.
+     *
+     * @param input  the text data set
+     * @param output the file of doubles to write
+     * @return the number of points written
+     * @throws IOException if the input cannot be read, is not a data set, or the output cannot be written
+     */
+    public static long convert(Path input, Path output) throws IOException {
+        Layout layout = scan(input);
+        try (BufferedReader reader = Files.newBufferedReader(input, StandardCharsets.US_ASCII);
+             FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+            StreamTokens tokens = points(reader, layout);
+            ByteBuffer buffer = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+            for (long i = 0; i < layout.points; i++) {
+                double x = point(tokens, input, layout.points, i);
+                if (!buffer.hasRemaining()) {
+                    drain(buffer, out);
+                }
+                buffer.putDouble(x);
+            }
+            drain(buffer, out);
+            return layout.points;
+        }
+    }
+
+    /**
+     * Read a whole text data set into memory.
+     *
+     * @param input the text data set
+     * @return the points
+     * @throws IOException if the input cannot be read or is not a data set
+     */
+    public static double[] read(Path input) throws IOException {
+        Layout layout = scan(input);
+        if (layout.points > Integer.MAX_VALUE - 8) {
+            throw new IOException("Too many points to load, convert the data set instead: " + input);
+        }
+        try (BufferedReader reader = Files.newBufferedReader(input, StandardCharsets.US_ASCII)) {
+            StreamTokens tokens = points(reader, layout);
+            double[] data = new double[(int) layout.points];
+            for (int i = 0; i < data.length; i++) {
+                data[i] = point(tokens, input, layout.points, i);
+            }
+            return data;
+        }
+    }
+
+    // the number of points of a data set, and whether they are preceded by that number
+    private static class Layout {
+        final long points;
+        final boolean counted;
+
+        Layout(long points, boolean counted) {
+            this.points = points;
+            this.counted = counted;
+        }
+    }
+
+    // the first pass: skip the header, count the numbers and check that every token after it is one
+    private static Layout scan(Path input) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(input, StandardCharsets.US_ASCII)) {
+            StreamTokens tokens = new StreamTokens(reader);
+            String first = skipHeader(tokens);
+            if (first == null) {
+                throw new IOException("No points: " + input);
+            }
+            long numbers = 1;
+            String token;
+            while ((token = tokens.next()) != null) {
+                if (!isNumber(token)) {
+                    throw new IOException("Not a number: " + token + ": " + input);
+                }
+                numbers++;
+            }
+            long count = -1;
+            try {
+                count = Long.parseLong(first);
+            } catch (NumberFormatException e) {
+                // a point, not the number of points
+            }
+            return count == numbers - 1 ? new Layout(count, true) : new Layout(numbers, false);
+        }
+    }
+
+    // the tokens of a reader positioned at the first point
+    private static StreamTokens points(BufferedReader reader, Layout layout) throws IOException {
+        StreamTokens tokens = new StreamTokens(reader);
+        String first = skipHeader(tokens);
+        if (!layout.counted) {
+            tokens.pushBack(first);
+        }
+        return tokens;
+    }
+
+    // skip the lines starting with a word that is not a number; return the first number, or null
+    private static String skipHeader(StreamTokens tokens) throws IOException {
+        String token;
+        while ((token = tokens.next()) != null && !isNumber(token)) {
+            tokens.skipLine();
+        }
+        return token;
+    }
+
+    private static boolean isNumber(String token) {
+        try {
+            Double.parseDouble(token);
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    // the i-th of n points, the next token
+    private static double point(StreamTokens tokens, Path input, long n, long i) throws IOException {
+        String token = tokens.next();
+        if (token == null) {
+            throw new IOException("Expected " + n + " points, found " + i + ": " + input);
+        }
+        try {
+            return Double.parseDouble(token);
+        } catch (NumberFormatException e) {
+            throw new IOException("Not a number: " + token);
+        }
+    }
+
+    private static void drain(ByteBuffer buffer, FileChannel out) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    // whitespace separated tokens of a reader
+    private static class StreamTokens {
+        private final Reader reader;
+        private final StringBuilder token = new StringBuilder();
+        private String pushedBack;
+        private boolean endOfLine;      // whether the last token ended its line
+
+        StreamTokens(Reader reader) {
+            this.reader = reader;
+        }
+
+        String next() throws IOException {
+            if (pushedBack != null) {
+                String next = pushedBack;
+                pushedBack = null;
+                return next;
+            }
+            token.setLength(0);
+            int c;
+            while ((c = reader.read()) >= 0 && Character.isWhitespace(c)) {
+                // skip
+            }
+            while (c >= 0 && !Character.isWhitespace(c)) {
+                token.append((char) c);
+                c = reader.read();
+            }
+            endOfLine = c == '\n';
+            return token.length() == 0 ? null : token.toString();
+        }
+
+        // the next call of next returns token again
+        void pushBack(String token) {
+            pushedBack = token;
+        }
+
+        // skip the rest of the line of the last token
+        void skipLine() throws IOException {
+            if (endOfLine) {
+                return;
+            }
+            int c;
+            while ((c = reader.read()) >= 0 && c != '\n') {
+                // skip
+            }
+        }
+    }
+}
@@ -3,9 +3,10 @@ package ExpectationMaximizationAlgorithm;
 import java.util.*;
 
 public class EM {
-    private static final double T = 1.0 / 3.0;
-    private static final double SIGMA = 1;
-    private static final double EPSILON = 0.001;
+    static final double T = 1.0 / 3.0;
+    static final double SIGMA = 1;
+    static final double EPSILON = 0.001;
+    static final int MAX_ITERATIONS = 1000;
 
     public static void main(String[] args) {
         Scanner console = new Scanner(System.in);
@@ -19,33 +20,29 @@ public class EM {
             data[i] = console.nextDouble();
         }
 
-        // initialize theta to be minimum, maximum and median respectively
-        Arrays.sort(data);
-        double[] currTheta = new double[3];
-        currTheta[0] = data[0];
-        currTheta[1] = data[data.length / 2 - 1];
-        currTheta[2] = data[data.length - 1];
+        // initialize theta to be minimum, maximum and median respectively, selected rather than sorted
+        double[] currTheta = Selection.orderStatistics(data, 0, data.length / 2 - 1, data.length - 1);
 
         // to update 3 theta
         double[] nextTheta = new double[3];
 
-        // to store all expectations for given data set
-        double[][] expectations = new double[data.length][3];
-
         // display
         System.out.printf("i\t\tu_1\t\tu_2\t\tu_3\t\tLogLihood\n");
         System.out.printf("[1,]\t%.5f\t%.5f\t%.5f\t%.5f\n", currTheta[0], currTheta[1], currTheta[2], 0.0);
 
-        // keep doing until diff is less than the epsilon (or converged)
-        double difference = Double.POSITIVE_INFINITY;
+        // keep doing until no mean moves by EPSILON or more, for at most MAX_ITERATIONS iterations
+        StoppingRule rule = StoppingRule.parameterChange(EPSILON);
+        boolean converged = false;
+        boolean diverged = false;
         int it = 2;
-        while (difference >= EPSILON) {
-            EStep(expectations, currTheta, data);   // Expectation step
-            double log = MStep(expectations, nextTheta, data);  // Maximization step
+        while (!converged && !diverged && it <= MAX_ITERATIONS + 1) {
+            // Expectation step, Maximization step and log likelihood in one parallel pass over the data
+            double log = ParallelEM.iterate(data, currTheta, nextTheta);
 
-            // get the maximum of three results
-            difference = Math.max(nextTheta[0] - currTheta[0], nextTheta[1] - currTheta[1]);
-            difference = Math.max(difference, nextTheta[2] - currTheta[2]);
+            // converged once no mean moves by EPSILON or more, in either direction; a mean or a log likelihood
+            // that is not a number never converges
+            diverged = StoppingRule.diverged(nextTheta, log);
+            converged = !diverged && rule.converged(it - 1, currTheta, nextTheta, Double.NaN, log);
 
             // display current round
             System.out.printf("[%d,]\t", it);
@@ -56,17 +53,26 @@ public class EM {
             System.out.printf("%.5f\n", log);
             it++;
         }
-
+        if (!converged) {
+            System.err.println(diverged ? "Diverged: a mean or the log likelihood is not finite."
+                    : "Not converged after " + MAX_ITERATIONS + " iterations.");
+            System.exit(1);
+        }
     }
 
 
+    /*
+     * The separate E step, M step and log likelihood below are the reference EMKernel is checked against; see
+     * EMBenchmark.
+     */
+
     // Calculate the conditional probability according to the definition
     private static double conditionalProbability(double theta, double x) {
         return Math.exp(-Math.pow(x - theta, 2) / (2 * Math.pow(SIGMA, 2)));
     }
 
     // Expectation step; calculate all expectations
-    private static void EStep(double[][] expectations, double[] currTheta, double[] data) {
+    static void EStep(double[][] expectations, double[] currTheta, double[] data) {
         for (int i = 0; i < expectations.length; i++) {
             double f1 = conditionalProbability(currTheta[0], data[i]);
             double f2 = conditionalProbability(currTheta[1], data[i]);
@@ -81,7 +87,7 @@ public class EM {
     }
 
     // Maximization step; return the log likelihood of given data set
-    private static double MStep(double[][] expectations, double[] nextTheta, double[] data) {
+    static double MStep(double[][] expectations, double[] nextTheta, double[] data) {
         for (int i = 0; i < 3; i++) {
             double numerator = 0.0;
             double denominator = 0.0;
@@ -95,7 +101,7 @@ public class EM {
     }
 
     // calculate the log likelihood
-    private static double LogLihood(double[][] expectations, double[] nextTheta, double[] data) {
+    static double LogLihood(double[][] expectations, double[] nextTheta, double[] data) {
         double LogLihood = Math.log(T) * data.length - Math.log(2 * Math.pow(SIGMA, 2) * Math.PI) * (data.length / 2);
         for (int i = 0; i < 3; i++) {
             double temp = 0.0;
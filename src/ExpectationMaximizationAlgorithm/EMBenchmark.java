@@ -0,0 +1,69 @@
+package ExpectationMaximizationAlgorithm;
+
+import java.util.*;
+
+/**
+ * Compares the cost of one EM iteration with the separate EStep, MStep and LogLihood of EM against the fused
+ * EMKernel, on synthetic data sampled from Normal(3, 1), Normal(5, 1) and Normal(7, 1), and checks that both give
+ * the same means and log likelihood.
+ *
+ * Usage: EMBenchmark [n [iterations]]
+ */
+public class EMBenchmark {
+    private static final double TOLERANCE = 1e-9;
+
+    public static void main(String[] args) {
+        int n = args.length >= 1 ? Integer.parseInt(args[0]) : 1_000_000;
+        int iterations = args.length >= 2 ? Integer.parseInt(args[1]) : 20;
+        double[] data = sample(n, new Random(312));
+        double[] theta = {data[0], data[n / 2], data[n - 1]};
+
+        // both versions must agree
+        double[][] expectations = new double[n][3];
+        double[] reference = new double[3];
+        double[] fused = new double[3];
+        EM.EStep(expectations, theta, data);
+        double referenceLog = EM.MStep(expectations, reference, data);
+        double fusedLog = EMKernel.iterate(data, theta, fused);
+        for (int k = 0; k < 3; k++) {
+            if (Math.abs(reference[k] - fused[k]) > TOLERANCE * Math.max(1.0, Math.abs(reference[k]))) {
+                System.err.println("Means differ: " + Arrays.toString(reference) + " " + Arrays.toString(fused));
+                System.exit(1);
+            }
+        }
+        if (Math.abs(referenceLog - fusedLog) > TOLERANCE * Math.abs(referenceLog)) {
+            System.err.println("Log likelihoods differ: " + referenceLog + " " + fusedLog);
+            System.exit(1);
+        }
+
+        double referenceNanos = 0;
+        double fusedNanos = 0;
+        for (int round = 0; round < 2; round++) {      // the first round is the warm up
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                EM.EStep(expectations, theta, data);
+                EM.MStep(expectations, reference, data);
+            }
+            referenceNanos = 1.0 * (System.nanoTime() - start) / iterations;
+            start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                EMKernel.iterate(data, theta, fused);
+            }
+            fusedNanos = 1.0 * (System.nanoTime() - start) / iterations;
+        }
+        System.out.printf("n = %d\n", n);
+        System.out.printf("reference:\t%.2f ms/iteration\t%.2f ns/point\n", referenceNanos / 1e6, referenceNanos / n);
+        System.out.printf("fused:\t\t%.2f ms/iteration\t%.2f ns/point\n", fusedNanos / 1e6, fusedNanos / n);
+        System.out.printf("speedup:\t%.2fx\n", referenceNanos / fusedNanos);
+    }
+
+    // n points drawn uniformly from the three components, sorted so that data[n / 2] is a median
+    static double[] sample(int n, Random random) {
+        double[] data = new double[n];
+        for (int i = 0; i < n; i++) {
+            data[i] = 3 + 2 * random.nextInt(3) + random.nextGaussian();
+        }
+        Arrays.sort(data);
+        return data;
+    }
+}
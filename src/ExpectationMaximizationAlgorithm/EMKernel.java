@@ -0,0 +1,137 @@
+package ExpectationMaximizationAlgorithm;
+
+/**
+ * The E step, M step and log likelihood of EM fused into one pass over the data.
+ *
+ * For the three components the M step only needs, over all points, the sums of the responsibilities and of the
+ * responsibilities times x; and since
+ *
+ *      sum_j r_jk (x_j - u_k)^2 = sum_j r_jk x_j^2 - 2 u_k sum_j r_jk x_j + u_k^2 sum_j r_jk
+ *
+ * the log likelihood at the new means only needs the sums of the responsibilities times x^2 as well. So one pass
+ * computing the responsibilities of every point and adding them into these nine sums replaces the E step, the M
+ * step and the log likelihood, and the responsibilities are never stored at all.
+ *
+ * The sums are laid out in a double[STATS]: SUM_R + k, SUM_RX + k and SUM_RXX + k for component k.
+ */
+public class EMKernel {
+    static final int K = 3;
+    static final int SUM_R = 0;
+    static final int SUM_RX = K;
+    static final int SUM_RXX = 2 * K;
+    static final int STATS = 3 * K;
+
+    private static final double HALF_OVER_SIGMA_SQUARED = 1.0 / (2 * EM.SIGMA * EM.SIGMA);
+
+    /**
+     * Run one EM iteration: compute the next means from the current ones.
+     *
+     * @param data      the data set
+     * @param currTheta the current means
+     * @param nextTheta receives the next means
+     * @return the log likelihood at the next means, as EM.LogLihood computes it
+     */
+    public static double iterate(double[] data, double[] currTheta, double[] nextTheta) {
+        double[] stats = new double[STATS];
+        accumulate(data, 0, data.length, currTheta, stats);
+        return maximize(stats, data.length, nextTheta);
+    }
+
+    /**
+     * Add the sufficient statistics of data[from, to) under the given means to stats.
+     *
+     * @param data  the data set
+     * @param from  the first point, inclusive
+     * @param to    the last point, exclusive
+     * @param theta the current means
+     * @param stats the STATS sums to add to
+     */
+    public static void accumulate(double[] data, int from, int to, double[] theta, double[] stats) {
+        double u1 = theta[0];
+        double u2 = theta[1];
+        double u3 = theta[2];
+        double r1 = 0.0, r2 = 0.0, r3 = 0.0;
+        double rx1 = 0.0, rx2 = 0.0, rx3 = 0.0;
+        double rxx1 = 0.0, rxx2 = 0.0, rxx3 = 0.0;
+        for (int j = from; j < to; j++) {
+            double x = data[j];
+            double d1 = x - u1;
+            double d2 = x - u2;
+            double d3 = x - u3;
+            double f1 = Math.exp(-d1 * d1 * HALF_OVER_SIGMA_SQUARED);
+            double f2 = Math.exp(-d2 * d2 * HALF_OVER_SIGMA_SQUARED);
+            double f3 = Math.exp(-d3 * d3 * HALF_OVER_SIGMA_SQUARED);
+            double inverse = 1.0 / (f1 + f2 + f3);
+            double e1 = f1 * inverse;
+            double e2 = f2 * inverse;
+            double e3 = f3 * inverse;
+            double xx = x * x;
+            r1 += e1;
+            r2 += e2;
+            r3 += e3;
+            rx1 += e1 * x;
+            rx2 += e2 * x;
+            rx3 += e3 * x;
+            rxx1 += e1 * xx;
+            rxx2 += e2 * xx;
+            rxx3 += e3 * xx;
+        }
+        stats[SUM_R] += r1;
+        stats[SUM_R + 1] += r2;
+        stats[SUM_R + 2] += r3;
+        stats[SUM_RX] += rx1;
+        stats[SUM_RX + 1] += rx2;
+        stats[SUM_RX + 2] += rx3;
+        stats[SUM_RXX] += rxx1;
+        stats[SUM_RXX + 1] += rxx2;
+        stats[SUM_RXX + 2] += rxx3;
+    }
+
+    /**
+     * The M step and log likelihood from the sufficient statistics of n points.
+     *
+     * @param stats     the STATS sums over all points
+     * @param n         the number of points
+     * @param nextTheta receives the next means
+     * @return the log likelihood at the next means, as EM.LogLihood computes it
+     */
+    public static double maximize(double[] stats, long n, double[] nextTheta) {
+        double logLihood = Math.log(EM.T) * n - Math.log(2 * EM.SIGMA * EM.SIGMA * Math.PI) * (n / 2);
+        for (int k = 0; k < K; k++) {
+            double r = stats[SUM_R + k];
+            double rx = stats[SUM_RX + k];
+            double u = rx / r;
+            nextTheta[k] = u;
+            logLihood -= (stats[SUM_RXX + k] - 2 * u * rx + u * u * r) * HALF_OVER_SIGMA_SQUARED;
+        }
+        return logLihood;
+    }
+
+    /**
+     * The E step alone, for callers that need the responsibilities themselves: one flat array per component.
+     *
+     * @param data  the data set
+     * @param theta the current means
+     * @param e1    receives P(cls 1 | x_j) for every point
+     * @param e2    receives P(cls 2 | x_j) for every point
+     * @param e3    receives P(cls 3 | x_j) for every point
+     */
+    public static void responsibilities(double[] data, double[] theta, double[] e1, double[] e2, double[] e3) {
+        double u1 = theta[0];
+        double u2 = theta[1];
+        double u3 = theta[2];
+        for (int j = 0; j < data.length; j++) {
+            double x = data[j];
+            double d1 = x - u1;
+            double d2 = x - u2;
+            double d3 = x - u3;
+            double f1 = Math.exp(-d1 * d1 * HALF_OVER_SIGMA_SQUARED);
+            double f2 = Math.exp(-d2 * d2 * HALF_OVER_SIGMA_SQUARED);
+            double f3 = Math.exp(-d3 * d3 * HALF_OVER_SIGMA_SQUARED);
+            double inverse = 1.0 / (f1 + f2 + f3);
+            e1[j] = f1 * inverse;
+            e2[j] = f2 * inverse;
+            e3[j] = f3 * inverse;
+        }
+    }
+}
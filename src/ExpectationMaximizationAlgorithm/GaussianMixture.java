@@ -0,0 +1,496 @@
+package ExpectationMaximizationAlgorithm;
+
+import java.util.*;
+
+/**
+ * Fits a one dimensional mixture of K Gaussians with EM.
+ *
+ * By default every component learns its mean, its variance and its mixing weight in the M step. The variance
+ * can be fixed to one value for all components and the weights to 1/K, which with K = 3 and variance 1 is the
+ * model of EM; see unitVarianceThreeComponents().
+ *
+ * The E step works in log space: the log density of each component is computed directly, and the
+ * responsibilities are normalized with log-sum-exp, so a point far from every mean gets well defined
+ * responsibilities instead of 0/0. The log likelihood reported is the observed one, sum_j log sum_k w_k N(x_j).
+ *
+ * With accelerate() every iteration is a SQUAREM step: two EM steps give the direction and the step length of
+ * an extrapolation along the EM path, which crosses the long flat stretches plain EM crawls along when components
+ * overlap. An extrapolated point that does not beat the first of the two EM steps is dropped for the second EM step,
+ * so the log likelihood never decreases.
+ *
+ * A GaussianMixture only holds configuration; fit() can be called from any number of threads.
+ */
+public class GaussianMixture {
+    private static final double LOG_2_PI = Math.log(2 * Math.PI);
+    // the parameters of a fit are laid out as the k means, the k variances, then the k weights
+    static final int MEANS = 0;
+    static final int VARIANCES = 1;
+    static final int WEIGHTS = 2;
+
+    private final int k;
+    private double fixedVariance = Double.NaN;      // NaN when the variances are learned
+    private boolean fixedWeights = false;
+    private double minVariance = 1e-6;
+    private double tolerance = 1e-3;
+    private int maxIterations = 1000;
+    private StoppingRule stoppingRule = null;       // null for a change of log likelihood under tolerance
+    private boolean accelerated = false;
+
+    /**
+     * Create a mixture of k components that learns means, variances and weights.
+     *
+     * @param k the number of components
+     */
+    public GaussianMixture(int k) {
+        if (k < 1) {
+            throw new IllegalArgumentException("Need at least one component");
+        }
+        this.k = k;
+    }
+
+    /**
+     * The mixture of EM: three components with variance 1 and weights 1/3; only the means are learned.
+     *
+     * @return the preset
+     */
+    public static GaussianMixture unitVarianceThreeComponents() {
+        return new GaussianMixture(3).fixVariance(EM.SIGMA * EM.SIGMA).fixWeights().tolerance(EM.EPSILON);
+    }
+
+    /**
+     * Give every component the same variance, and do not learn it.
+     *
+     * @param variance the variance
+     * @return this
+     */
+    public GaussianMixture fixVariance(double variance) {
+        if (!(variance > 0)) {
+            throw new IllegalArgumentException("Variance must be positive: " + variance);
+        }
+        fixedVariance = variance;
+        return this;
+    }
+
+    /**
+     * Give every component the weight 1/K, and do not learn it.
+     *
+     * @return this
+     */
+    public GaussianMixture fixWeights() {
+        fixedWeights = true;
+        return this;
+    }
+
+    /**
+     * Set the smallest variance a component may shrink to, so that a component on a single point does not
+     * collapse to a spike of infinite likelihood.
+     *
+     * @param minVariance the smallest variance
+     * @return this
+     */
+    public GaussianMixture minVariance(double minVariance) {
+        this.minVariance = minVariance;
+        return this;
+    }
+
+    /**
+     * Set the change of log likelihood between two iterations under which the fit has converged.
+     *
+     * @param tolerance the absolute change
+     * @return this
+     */
+    public GaussianMixture tolerance(double tolerance) {
+        this.tolerance = tolerance;
+        return this;
+    }
+
+    /**
+     * Set the largest number of iterations.
+     *
+     * @param maxIterations the number of iterations
+     * @return this
+     */
+    public GaussianMixture maxIterations(int maxIterations) {
+        this.maxIterations = maxIterations;
+        return this;
+    }
+
+    /**
+     * Stop on the given rule instead of on the change of log likelihood; maxIterations still applies. The
+     * parameters the rule sees are the means, then the variances, then the weights.
+     *
+     * @param stoppingRule the rule
+     * @return this
+     */
+    public GaussianMixture stopWhen(StoppingRule stoppingRule) {
+        this.stoppingRule = stoppingRule;
+        return this;
+    }
+
+    /**
+     * Make every iteration a SQUAREM extrapolation of two EM steps, with a fallback to the EM step whenever the
+     * extrapolation would lower the log likelihood.
+     *
+     * @return this
+     */
+    public GaussianMixture accelerate() {
+        accelerated = true;
+        return this;
+    }
+
+    public int components() {
+        return k;
+    }
+
+    /**
+     * The parameters of a mixture.
+     */
+    public static class Fit {
+        public final double[] means;
+        public final double[] variances;
+        public final double[] weights;
+        public final double logLikelihood;     // at these parameters
+        public final int iterations;
+        public final int passes;                // over the data, the actual cost of the fit
+
+        Fit(double[] means, double[] variances, double[] weights, double logLikelihood, int iterations, int passes) {
+            this.means = means;
+            this.variances = variances;
+            this.weights = weights;
+            this.logLikelihood = logLikelihood;
+            this.iterations = iterations;
+            this.passes = passes;
+        }
+
+        /**
+         * @param x a point
+         * @return the log density of the mixture at x
+         */
+        public double logDensity(double x) {
+            double[] logs = new double[means.length];
+            for (int c = 0; c < means.length; c++) {
+                logs[c] = logComponent(x, means[c], variances[c], weights[c]);
+            }
+            return logSumExp(logs);
+        }
+
+        /**
+         * @param x a point
+         * @return P(component c | x) for every component
+         */
+        public double[] responsibilities(double x) {
+            double[] logs = new double[means.length];
+            for (int c = 0; c < means.length; c++) {
+                logs[c] = logComponent(x, means[c], variances[c], weights[c]);
+            }
+            double total = logSumExp(logs);
+            for (int c = 0; c < means.length; c++) {
+                logs[c] = Math.exp(logs[c] - total);
+            }
+            return logs;
+        }
+
+        @Override
+        public String toString() {
+            return "means=" + Arrays.toString(means) + " variances=" + Arrays.toString(variances)
+                    + " weights=" + Arrays.toString(weights) + " logLikelihood=" + logLikelihood
+                    + " iterations=" + iterations + " passes=" + passes;
+        }
+    }
+
+    /**
+     * Fit the mixture, starting from means spread over the data: the minimum, the maximum, and the order
+     * statistics evenly in between (for K = 3, the minimum, median and maximum EM starts from).
+     *
+     * @param data the data set
+     * @return the fitted parameters
+     */
+    public Fit fit(double[] data) {
+        return fit(data, initialMeans(data));
+    }
+
+    /**
+     * Fit the mixture from the given initial means, with equal weights and, unless fixed, the variance of the data
+     * as initial variances.
+     *
+     * @param data         the data set
+     * @param initialMeans one mean per component
+     * @return the fitted parameters
+     */
+    public Fit fit(double[] data, double[] initialMeans) {
+        Run run = start(data, initialMeans);
+        run.advance(maxIterations);
+        return run.fit();
+    }
+
+    /**
+     * Start a fit that is advanced by hand, for drivers that run many fits and abandon some of them part way.
+     *
+     * @param data         the data set, only read
+     * @param initialMeans one mean per component
+     * @return the fit, evaluated at the initial parameters
+     */
+    Run start(double[] data, double[] initialMeans) {
+        if (initialMeans.length != k) {
+            throw new IllegalArgumentException("Need " + k + " initial means");
+        }
+        if (data.length == 0) {
+            throw new IllegalArgumentException("No data");
+        }
+        Run run = new Run(data);
+        double variance = isVarianceFixed() ? fixedVariance : variance(data);
+        System.arraycopy(initialParams(initialMeans, variance), 0, run.params, 0, run.params.length);
+        run.evaluate();
+        return run;
+    }
+
+    // the parameters from the given means, equal weights and, unless fixed, the given variance
+    double[] initialParams(double[] initialMeans, double variance) {
+        double[] params = new double[3 * k];
+        System.arraycopy(initialMeans, 0, params, k * MEANS, k);
+        Arrays.fill(params, k * VARIANCES, k * VARIANCES + k,
+                isVarianceFixed() ? fixedVariance : Math.max(variance, minVariance));
+        Arrays.fill(params, k * WEIGHTS, k * WEIGHTS + k, 1.0 / k);
+        return params;
+    }
+
+    // the state of one fit
+    class Run {
+        final double[] data;
+        final double[] params = new double[3 * k];
+        final double[] stats = new double[3 * k];       // of accumulate at params
+        double logLikelihood;                           // at params
+        int passes = 0;
+        int iterations = 0;
+        boolean stopped = false;
+        private final StoppingRule rule =
+                stoppingRule != null ? stoppingRule : StoppingRule.logLikelihoodChange(tolerance);
+        private final double[] previous = new double[3 * k];
+
+        Run(double[] data) {
+            this.data = data;
+        }
+
+        // run up to steps more iterations; returns whether the fit has stopped
+        boolean advance(int steps) {
+            for (int step = 0; step < steps && !stopped; step++) {
+                if (iterations >= maxIterations) {
+                    stopped = true;
+                    break;
+                }
+                System.arraycopy(params, 0, previous, 0, previous.length);
+                double previousLogLikelihood = logLikelihood;
+                if (accelerated) {
+                    squaremStep();
+                } else {
+                    emStep();
+                }
+                iterations++;
+                stopped = StoppingRule.diverged(params, logLikelihood)
+                        || rule.converged(iterations, previous, params, previousLogLikelihood, logLikelihood);
+            }
+            stopped |= iterations >= maxIterations;
+            return stopped;
+        }
+
+        // the E step at params
+        void evaluate() {
+            Arrays.fill(stats, 0.0);
+            logLikelihood = accumulate(data, 0, data.length, params, stats);
+            passes++;
+        }
+
+        void emStep() {
+            maximize(stats, data.length, params);
+            evaluate();
+        }
+
+        // from p0, two EM steps p1 and p2, then p0 - 2 a r + a^2 v with r = p1 - p0, v = p2 - 2 p1 + p0 and the
+        // step length a = -|r| / |v|, which is p2 for a = -1
+        void squaremStep() {
+            double[] p0 = params.clone();
+            emStep();
+            double[] p1 = params.clone();
+            double firstLogLikelihood = logLikelihood;
+            maximize(stats, data.length, params);
+            double[] p2 = params.clone();
+
+            double rr = 0.0;
+            double vv = 0.0;
+            for (int i = 0; i < params.length; i++) {
+                double r = p1[i] - p0[i];
+                double v = p2[i] - 2 * p1[i] + p0[i];
+                rr += r * r;
+                vv += v * v;
+            }
+            if (vv > 0) {
+                double a = Math.min(-Math.sqrt(rr / vv), -1.0);
+                for (int i = 0; i < params.length; i++) {
+                    double r = p1[i] - p0[i];
+                    double v = p2[i] - 2 * p1[i] + p0[i];
+                    params[i] = p0[i] - 2 * a * r + a * a * v;
+                }
+                project();
+                evaluate();
+                if (logLikelihood >= firstLogLikelihood) {
+                    return;
+                }
+                // the extrapolation lost likelihood (or left the parameter space): take the EM step instead
+                System.arraycopy(p2, 0, params, 0, params.length);
+            }
+            evaluate();
+        }
+
+        // back into the parameter space after an extrapolation
+        void project() {
+            if (!isVarianceFixed()) {
+                for (int c = 0; c < k; c++) {
+                    params[k * VARIANCES + c] = Math.max(params[k * VARIANCES + c], minVariance);
+                }
+            }
+            if (!fixedWeights) {
+                double total = 0.0;
+                for (int c = 0; c < k; c++) {
+                    params[k * WEIGHTS + c] = Math.max(params[k * WEIGHTS + c], 0.0);
+                    total += params[k * WEIGHTS + c];
+                }
+                for (int c = 0; c < k; c++) {
+                    params[k * WEIGHTS + c] /= total;
+                }
+            }
+        }
+
+        Fit fit() {
+            return new Fit(Arrays.copyOfRange(params, k * MEANS, k * MEANS + k),
+                    Arrays.copyOfRange(params, k * VARIANCES, k * VARIANCES + k),
+                    Arrays.copyOfRange(params, k * WEIGHTS, k * WEIGHTS + k), logLikelihood, iterations, passes);
+        }
+    }
+
+    /**
+     * The log-space E step over data[from, to): add, for every component c, the sums of the responsibilities
+     * (stats[c]), of the responsibilities times x - u_c (stats[K + c]) and times (x - u_c)^2 (stats[2K + c]), where
+     * u_c is the mean of c in params. Centering on the current means keeps the variance of the M step exact on data
+     * far from 0, where sum r x^2 / r - mean^2 would lose every digit to cancellation.
+     *
+     * @param params the K means, then the K variances, then the K weights
+     * @return the observed log likelihood of data[from, to) under the given parameters
+     */
+    double accumulate(double[] data, int from, int to, double[] params, double[] stats) {
+        // the per component constants of log(w N(x; u, v)) = base - (x - u)^2 * scale
+        double[] base = new double[k];
+        double[] scale = new double[k];
+        for (int c = 0; c < k; c++) {
+            double variance = params[k * VARIANCES + c];
+            base[c] = Math.log(params[k * WEIGHTS + c]) - 0.5 * (LOG_2_PI + Math.log(variance));
+            scale[c] = 0.5 / variance;
+        }
+        double[] logs = new double[k];
+        double logLikelihood = 0.0;
+        for (int j = from; j < to; j++) {
+            double x = data[j];
+            double max = Double.NEGATIVE_INFINITY;
+            for (int c = 0; c < k; c++) {
+                double d = x - params[c];
+                logs[c] = base[c] - d * d * scale[c];
+                max = Math.max(max, logs[c]);
+            }
+            double sum = 0.0;
+            for (int c = 0; c < k; c++) {
+                logs[c] = Math.exp(logs[c] - max);
+                sum += logs[c];
+            }
+            logLikelihood += max + Math.log(sum);
+            double inverse = 1.0 / sum;
+            for (int c = 0; c < k; c++) {
+                double r = logs[c] * inverse;
+                stats[c] += r;
+                double d = x - params[c];
+                stats[k + c] += r * d;
+                stats[2 * k + c] += r * d * d;
+            }
+        }
+        return logLikelihood;
+    }
+
+    // the M step from the sums of accumulate at params over n points; a component with no weight keeps its
+    // parameters
+    void maximize(double[] stats, long n, double[] params) {
+        for (int c = 0; c < k; c++) {
+            double r = stats[c];
+            if (!(r > 0)) {
+                continue;
+            }
+            double shift = stats[k + c] / r;        // the new mean minus the one the sums are centered on
+            params[k * MEANS + c] += shift;
+            if (!isVarianceFixed()) {
+                params[k * VARIANCES + c] = Math.max(stats[2 * k + c] / r - shift * shift, minVariance);
+            }
+            if (!fixedWeights) {
+                params[k * WEIGHTS + c] = r / n;
+            }
+        }
+    }
+
+    // move sums of accumulate centered on the means of from onto the means of to:
+    // sum r (x - u')^2 = sum r (x - u)^2 - 2 (u' - u) sum r (x - u) + (u' - u)^2 sum r
+    void recenter(double[] stats, double[] from, double[] to) {
+        for (int c = 0; c < k; c++) {
+            double delta = to[k * MEANS + c] - from[k * MEANS + c];
+            double r = stats[c];
+            double rd = stats[k + c];
+            stats[2 * k + c] += delta * (r * delta - 2 * rd);
+            stats[k + c] = rd - r * delta;
+        }
+    }
+
+    private boolean isVarianceFixed() {
+        return !Double.isNaN(fixedVariance);
+    }
+
+    // the minimum, the maximum, and the order statistics evenly in between, selected from a copy of the data
+    double[] initialMeans(double[] data) {
+        int[] ranks = new int[k];
+        if (k == 1) {
+            ranks[0] = (data.length - 1) / 2;
+        }
+        for (int c = 0; k > 1 && c < k; c++) {
+            long index = (long) c * data.length / (k - 1) - 1;
+            ranks[c] = (int) Math.max(0, Math.min(data.length - 1, index));
+        }
+        return Selection.orderStatistics(data.clone(), ranks);
+    }
+
+    private static double variance(double[] data) {
+        double mean = 0.0;
+        for (double x : data) {
+            mean += x;
+        }
+        mean /= data.length;
+        double sum = 0.0;
+        for (double x : data) {
+            sum += (x - mean) * (x - mean);
+        }
+        return sum / data.length;
+    }
+
+    static double logComponent(double x, double mean, double variance, double weight) {
+        double d = x - mean;
+        return Math.log(weight) - 0.5 * (LOG_2_PI + Math.log(variance)) - d * d / (2 * variance);
+    }
+
+    static double logSumExp(double[] logs) {
+        double max = Double.NEGATIVE_INFINITY;
+        for (double log : logs) {
+            max = Math.max(max, log);
+        }
+        if (max == Double.NEGATIVE_INFINITY) {
+            return max;
+        }
+        double sum = 0.0;
+        for (double log : logs) {
+            sum += Math.exp(log - max);
+        }
+        return max + Math.log(sum);
+    }
+}
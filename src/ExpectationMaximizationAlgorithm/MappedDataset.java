@@ -0,0 +1,81 @@
+package ExpectationMaximizationAlgorithm;
+
+import java.io.*;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+
+/**
+ * A data set stored as a flat file of little-endian doubles, as written by DatasetConverter, read block by block
+ * through memory mapped windows of the file.
+ *
+ * Only one block of BLOCK doubles is held on the heap, so a pass over the data costs a sequential read of the
+ * file whatever its size, and the data set may be larger than the memory.
+ */
+public class MappedDataset implements Closeable {
+    static final int BLOCK = 1 << 20;                       // doubles copied to the heap at a time
+    private static final long WINDOW = 16L * BLOCK * 8;     // bytes mapped at a time, a multiple of a block
+
+    private final FileChannel channel;
+    private final long size;
+    private final double[] block = new double[BLOCK];
+
+    /**
+     * Receives the points of a data set, one block at a time.
+     */
+    public interface BlockConsumer {
+        /**
+         * @param block  the points; only valid during the call
+         * @param length the number of points of block in use
+         */
+        void accept(double[] block, int length);
+    }
+
+    /**
+     * Open a data set file.
+     *
+     * @param path the file
+     * @throws IOException if the file cannot be opened or is not a whole number of doubles
+     */
+    public MappedDataset(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        long bytes = channel.size();
+        if (bytes % 8 != 0) {
+            channel.close();
+            throw new IOException("Not a file of doubles: " + path);
+        }
+        size = bytes / 8;
+    }
+
+    /**
+     * @return the number of points
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Pass every point to a consumer, in file order. An instance runs one pass at a time.
+     *
+     * @param consumer receives the blocks
+     * @throws IOException if the file cannot be mapped
+     */
+    public void forEachBlock(BlockConsumer consumer) throws IOException {
+        for (long position = 0; position < size * 8; position += WINDOW) {
+            long length = Math.min(WINDOW, size * 8 - position);
+            DoubleBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, length)
+                    .order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+            while (window.hasRemaining()) {
+                int count = Math.min(BLOCK, window.remaining());
+                window.get(block, 0, count);
+                consumer.accept(block, count);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,290 @@
+package ExpectationMaximizationAlgorithm;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+
+/**
+ * Fits a GaussianMixture from many initial means at once and keeps the best fit.
+ *
+ * The starts run concurrently over the one data array, which they only read. After a few iterations every start
+ * is compared with the leader, the start with the highest log likelihood so far, and the starts trailing it by more
+ * than a margin are dropped; only the others run on to convergence. Starts are compared at the same iteration, so
+ * which starts survive does not depend on the threads.
+ *
+ * Start i draws its initial means from its own seed, the i-th long of a SplittableRandom built on the driver's
+ * seed; the seeds are reported, and initialMeans(data, seed) gives the same means again.
+ *
+ * Usage: MultiStartEM dataset.txt [starts [seed]]
+ */
+public class MultiStartEM {
+    /**
+     * How initial means are drawn.
+     */
+    public enum Initialization {
+        /** k distinct points of the data, uniformly */
+        RANDOM,
+        /** k-means++: the first point uniformly, each next one with probability proportional to its squared
+         *  distance to the closest mean already drawn */
+        KMEANS_PLUS_PLUS
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: MultiStartEM dataset.txt [starts [seed]]");
+            System.exit(1);
+        }
+        double[] data = DatasetConverter.read(Paths.get(args[0]));
+        int starts = args.length >= 2 ? Integer.parseInt(args[1]) : 16;
+        long seed = args.length >= 3 ? Long.parseLong(args[2]) : 312;
+        GaussianMixture mixture = GaussianMixture.unitVarianceThreeComponents()
+                .stopWhen(StoppingRule.parameterChange(EM.EPSILON));
+
+        long start = System.nanoTime();
+        GaussianMixture.Fit single = mixture.fit(data);
+        double singleMs = (System.nanoTime() - start) / 1e6;
+        System.out.printf("min/median/max start:\t%s\t(%.1f ms)\n", single, singleMs);
+
+        for (Initialization initialization : Initialization.values()) {
+            MultiStartEM driver = new MultiStartEM(mixture).starts(starts).seed(seed).initialization(initialization);
+            start = System.nanoTime();
+            Result result = driver.fit(data);
+            double ms = (System.nanoTime() - start) / 1e6;
+            System.out.printf("%d %s starts:\t%s\t(%.1f ms)\n", starts, initialization, result.best, ms);
+            System.out.printf("\tbest start %d, seed %d; %d of %d starts pruned\n", result.bestStart,
+                    result.seeds[result.bestStart], result.prunedCount(), starts);
+        }
+    }
+
+    private final GaussianMixture mixture;
+    private int starts = 16;
+    private Initialization initialization = Initialization.KMEANS_PLUS_PLUS;
+    private long seed = 312;
+    private int pruneAfter = 5;
+    private double margin = 5.0;
+
+    /**
+     * @param mixture the model to fit, with its stopping rule
+     */
+    public MultiStartEM(GaussianMixture mixture) {
+        this.mixture = mixture;
+    }
+
+    /**
+     * @param starts the number of initial means to try
+     * @return this
+     */
+    public MultiStartEM starts(int starts) {
+        if (starts < 1) {
+            throw new IllegalArgumentException("Need at least one start");
+        }
+        this.starts = starts;
+        return this;
+    }
+
+    /**
+     * @param initialization how initial means are drawn
+     * @return this
+     */
+    public MultiStartEM initialization(Initialization initialization) {
+        this.initialization = initialization;
+        return this;
+    }
+
+    /**
+     * @param seed the seed the seeds of the starts are drawn from
+     * @return this
+     */
+    public MultiStartEM seed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * Compare the starts with the leader after the given number of iterations, and drop those trailing it by more
+     * than margin in log likelihood.
+     *
+     * @param iterations the number of iterations
+     * @param margin     the log likelihood a start may trail the leader by
+     * @return this
+     */
+    public MultiStartEM prune(int iterations, double margin) {
+        this.pruneAfter = iterations;
+        this.margin = margin;
+        return this;
+    }
+
+    /**
+     * The outcome of every start.
+     */
+    public static class Result {
+        public final GaussianMixture.Fit best;
+        public final int bestStart;
+        public final long[] seeds;              // of every start
+        public final double[] logLikelihoods;   // of every start, when it stopped or was dropped
+        public final boolean[] pruned;
+
+        Result(GaussianMixture.Fit best, int bestStart, long[] seeds, double[] logLikelihoods, boolean[] pruned) {
+            this.best = best;
+            this.bestStart = bestStart;
+            this.seeds = seeds;
+            this.logLikelihoods = logLikelihoods;
+            this.pruned = pruned;
+        }
+
+        /**
+         * @return the number of starts dropped before converging
+         */
+        public int prunedCount() {
+            int count = 0;
+            for (boolean p : pruned) {
+                count += p ? 1 : 0;
+            }
+            return count;
+        }
+    }
+
+    /**
+     * Run every start on the common pool.
+     *
+     * @param data the data set
+     * @return the best fit and the record of every start
+     */
+    public Result fit(double[] data) {
+        return fit(data, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Run every start on the given pool.
+     *
+     * @param data the data set
+     * @param pool the pool the starts run on
+     * @return the best fit and the record of every start
+     */
+    public Result fit(double[] data, ForkJoinPool pool) {
+        long[] seeds = new long[starts];
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int i = 0; i < starts; i++) {
+            seeds[i] = random.nextLong();
+        }
+        GaussianMixture.Run[] runs = new GaussianMixture.Run[starts];
+
+        // the first iterations of every start, then drop the ones trailing the leader
+        inParallel(pool, i -> {
+            runs[i] = mixture.start(data, initialMeans(data, seeds[i]));
+            runs[i].advance(pruneAfter);
+        });
+        double leader = Double.NEGATIVE_INFINITY;
+        for (GaussianMixture.Run run : runs) {
+            if (run.logLikelihood > leader) {
+                leader = run.logLikelihood;
+            }
+        }
+        boolean[] pruned = new boolean[starts];
+        for (int i = 0; i < starts; i++) {
+            pruned[i] = !runs[i].stopped && !(runs[i].logLikelihood >= leader - margin);
+        }
+
+        // the others to convergence
+        inParallel(pool, i -> {
+            if (!pruned[i]) {
+                runs[i].advance(Integer.MAX_VALUE);
+            }
+        });
+        double[] logLikelihoods = new double[starts];
+        int best = -1;
+        for (int i = 0; i < starts; i++) {
+            logLikelihoods[i] = runs[i].logLikelihood;
+            if (!pruned[i] && (best < 0 || runs[i].logLikelihood > runs[best].logLikelihood)) {
+                best = i;
+            }
+        }
+        if (best < 0) {
+            best = 0;       // every start diverged
+        }
+        return new Result(runs[best].fit(), best, seeds, logLikelihoods, pruned);
+    }
+
+    /**
+     * The initial means a start with the given seed draws, sorted.
+     *
+     * @param data the data set
+     * @param seed the seed of the start
+     * @return one mean per component
+     */
+    public double[] initialMeans(double[] data, long seed) {
+        int k = mixture.components();
+        SplittableRandom random = new SplittableRandom(seed);
+        double[] means = new double[k];
+        if (initialization == Initialization.RANDOM) {
+            // Floyd's sampling of min(k, n) distinct indices in O(k) memory, so that no point is drawn twice while
+            // there are enough; the rest with replacement
+            int distinct = Math.min(k, data.length);
+            Set<Integer> drawn = new HashSet<>();
+            int c = 0;
+            for (int j = data.length - distinct; j < data.length; j++) {
+                int t = random.nextInt(j + 1);
+                int index = drawn.add(t) ? t : j;
+                drawn.add(index);
+                means[c++] = data[index];
+            }
+            for (; c < k; c++) {
+                means[c] = data[random.nextInt(data.length)];
+            }
+        } else {
+            double[] distances = new double[data.length];
+            Arrays.fill(distances, Double.POSITIVE_INFINITY);
+            means[0] = data[random.nextInt(data.length)];
+            for (int c = 1; c < k; c++) {
+                double total = 0.0;
+                for (int j = 0; j < data.length; j++) {
+                    double d = data[j] - means[c - 1];
+                    distances[j] = Math.min(distances[j], d * d);
+                    total += distances[j];
+                }
+                means[c] = total > 0 ? data[draw(distances, total * random.nextDouble())] : means[0];
+            }
+        }
+        Arrays.sort(means);
+        return means;
+    }
+
+    // the index at which the running sum of weights passes target
+    private static int draw(double[] weights, double target) {
+        int last = 0;
+        for (int j = 0; j < weights.length; j++) {
+            if (weights[j] > 0) {
+                last = j;
+                target -= weights[j];
+                if (target < 0) {
+                    return j;
+                }
+            }
+        }
+        return last;
+    }
+
+    // run every start on the pool, one task each
+    private void inParallel(ForkJoinPool pool, IntConsumer start) {
+        List<Callable<Void>> tasks = new ArrayList<>(starts);
+        for (int i = 0; i < starts; i++) {
+            int index = i;
+            tasks.add(() -> {
+                start.accept(index);
+                return null;
+            });
+        }
+        for (Future<Void> task : pool.invokeAll(tasks)) {
+            try {
+                task.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException("Interrupted");
+            } catch (ExecutionException e) {
+                throw new RuntimeException(e.getCause());
+            }
+        }
+    }
+}
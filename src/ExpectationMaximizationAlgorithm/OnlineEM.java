@@ -0,0 +1,178 @@
+package ExpectationMaximizationAlgorithm;
+
+import java.util.*;
+
+/**
+ * Online EM (stepwise EM) for an unbounded stream of observations, in constant memory.
+ *
+ * The model is that of a GaussianMixture. Instead of the sums over the whole data set, OnlineEM keeps running
+ * averages of the sufficient statistics per observation: the responsibilities, times x - u and times (x - u)^2
+ * for every component, centered on the current means u and moved along with them. Each mini-batch computes its
+ * own averages in the log-space E step of GaussianMixture and moves the running ones towards them by the step size
+ *
+ *      rho_t = (t + tau)^-kappa
+ *
+ * for the t-th batch, then the parameters are the M step of the running averages. With kappa in (0.5, 1] the
+ * steps shrink slowly enough to forget the initial means and fast enough to converge; a smaller kappa or tau
+ * follows a drifting stream more closely.
+ *
+ * update() may be called from any thread; calls are serialized. snapshot() never blocks: it returns the
+ * immutable Estimate published by the last update.
+ */
+public class OnlineEM {
+    private final GaussianMixture mixture;
+    private final int k;
+    private double tau = 2.0;
+    private double kappa = 0.6;
+
+    // guarded by this
+    private final double[] params;
+    private final double[] averages;       // running averages of the sufficient statistics per observation
+    private final double[] batchStats;
+    private final double[] before;          // the parameters the averages are centered on, during an update
+    private long batches = 0;
+    private long observations = 0;
+
+    private volatile Estimate estimate;
+
+    /**
+     * @param mixture         the model; its stopping rule is not used
+     * @param initialMeans    one mean per component
+     * @param initialVariance the initial variance of every component, unless the model fixes it
+     */
+    public OnlineEM(GaussianMixture mixture, double[] initialMeans, double initialVariance) {
+        if (initialMeans.length != mixture.components()) {
+            throw new IllegalArgumentException("Need " + mixture.components() + " initial means");
+        }
+        this.mixture = mixture;
+        this.k = mixture.components();
+        this.params = mixture.initialParams(initialMeans, initialVariance);
+        this.averages = new double[3 * k];
+        this.batchStats = new double[3 * k];
+        this.before = new double[3 * k];
+        // the averages the initial parameters are the M step of, so that early small steps start from them
+        for (int c = 0; c < k; c++) {
+            double variance = params[k * GaussianMixture.VARIANCES + c];
+            double weight = params[k * GaussianMixture.WEIGHTS + c];
+            averages[c] = weight;
+            averages[k + c] = 0.0;
+            averages[2 * k + c] = weight * variance;
+        }
+        publish();
+    }
+
+    /**
+     * Set the step size schedule rho_t = (t + tau)^-kappa.
+     *
+     * @param tau   the delay, at least 0; larger values damp the first batches
+     * @param kappa the forgetting rate, in (0.5, 1]
+     * @return this
+     */
+    public synchronized OnlineEM stepSize(double tau, double kappa) {
+        if (!(tau >= 0) || !(kappa > 0.5 && kappa <= 1)) {
+            throw new IllegalArgumentException("Need tau >= 0 and kappa in (0.5, 1]");
+        }
+        this.tau = tau;
+        this.kappa = kappa;
+        return this;
+    }
+
+    /**
+     * Learn from a mini-batch of observations.
+     *
+     * @param batch the observations; not kept
+     */
+    public void update(double[] batch) {
+        update(batch, 0, batch.length);
+    }
+
+    /**
+     * Learn from the mini-batch batch[from, to).
+     *
+     * @param batch the observations; not kept
+     * @param from  the first observation, inclusive
+     * @param to    the last observation, exclusive
+     */
+    public synchronized void update(double[] batch, int from, int to) {
+        int n = to - from;
+        if (n <= 0) {
+            return;
+        }
+        Arrays.fill(batchStats, 0.0);
+        mixture.accumulate(batch, from, to, params, batchStats);
+        batches++;
+        observations += n;
+        double rho = Math.pow(batches + tau, -kappa);
+        for (int i = 0; i < averages.length; i++) {
+            averages[i] += rho * (batchStats[i] / n - averages[i]);
+        }
+        System.arraycopy(params, 0, before, 0, params.length);
+        mixture.maximize(averages, 1, params);
+        mixture.recenter(averages, before, params);
+        publish();
+    }
+
+    /**
+     * @return the parameters after the last update
+     */
+    public Estimate snapshot() {
+        return estimate;
+    }
+
+    private void publish() {
+        estimate = new Estimate(Arrays.copyOfRange(params, k * GaussianMixture.MEANS, k * GaussianMixture.MEANS + k),
+                Arrays.copyOfRange(params, k * GaussianMixture.VARIANCES, k * GaussianMixture.VARIANCES + k),
+                Arrays.copyOfRange(params, k * GaussianMixture.WEIGHTS, k * GaussianMixture.WEIGHTS + k),
+                batches, observations);
+    }
+
+    /**
+     * The parameters at one point of the stream. Immutable.
+     */
+    public static class Estimate {
+        private final double[] means;
+        private final double[] variances;
+        private final double[] weights;
+        public final long batches;
+        public final long observations;
+
+        Estimate(double[] means, double[] variances, double[] weights, long batches, long observations) {
+            this.means = means;
+            this.variances = variances;
+            this.weights = weights;
+            this.batches = batches;
+            this.observations = observations;
+        }
+
+        public double[] means() {
+            return means.clone();
+        }
+
+        public double[] variances() {
+            return variances.clone();
+        }
+
+        public double[] weights() {
+            return weights.clone();
+        }
+
+        /**
+         * @param x a point
+         * @return the log density of the mixture at x
+         */
+        public double logDensity(double x) {
+            double[] logs = new double[means.length];
+            for (int c = 0; c < means.length; c++) {
+                logs[c] = GaussianMixture.logComponent(x, means[c], variances[c], weights[c]);
+            }
+            return GaussianMixture.logSumExp(logs);
+        }
+
+        @Override
+        public String toString() {
+            return "means=" + Arrays.toString(means) + " variances=" + Arrays.toString(variances)
+                    + " weights=" + Arrays.toString(weights) + " batches=" + batches
+                    + " observations=" + observations;
+        }
+    }
+}
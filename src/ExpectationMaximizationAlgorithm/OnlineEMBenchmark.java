@@ -0,0 +1,98 @@
+package ExpectationMaximizationAlgorithm;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Compares OnlineEM with the batch fit of the same model (EM's: three components of variance 1, equal weights).
+ *
+ * Every data set is streamed in shuffled mini-batches, epoch after epoch, and after some epochs the online means
+ * are compared with the batch ones, along with the log likelihood of the whole data set under each. Then a stream
+ * of a million points from three components shows the throughput and the error after a single pass.
+ *
+ * Usage: OnlineEMBenchmark dataset.txt... (for example the data sets of EMtestdata.zip)
+ */
+public class OnlineEMBenchmark {
+    private static final int BATCH = 10;
+    private static final int[] EPOCHS = {1, 2, 5, 10, 20};
+    private static final int STREAM = 1_000_000;
+
+    public static void main(String[] args) throws IOException {
+        GaussianMixture mixture = GaussianMixture.unitVarianceThreeComponents()
+                .stopWhen(StoppingRule.parameterChange(EM.EPSILON));
+        System.out.println("data set\tepochs\tmax |online - batch| mean\tonline log likelihood\tbatch");
+        for (String arg : args) {
+            double[] data = DatasetConverter.read(Paths.get(arg));
+            String name = Paths.get(arg).getFileName().toString();
+            GaussianMixture.Fit batch = mixture.fit(data);
+
+            Random random = new Random(312);
+            double[] stream = data.clone();
+            shuffle(stream, random);
+            OnlineEM online = new OnlineEM(mixture, firstBatchMeans(mixture, stream), EM.SIGMA * EM.SIGMA);
+            int epoch = 0;
+            for (int report : EPOCHS) {
+                for (; epoch < report; epoch++) {
+                    for (int from = 0; from < stream.length; from += BATCH) {
+                        online.update(stream, from, Math.min(stream.length, from + BATCH));
+                    }
+                    shuffle(stream, random);
+                }
+                OnlineEM.Estimate estimate = online.snapshot();
+                System.out.printf("%s\t%d\t%.5f\t\t\t\t%.5f\t\t%.5f\n", name, epoch,
+                        maxDifference(estimate.means(), batch.means), logLikelihood(estimate, data),
+                        batch.logLikelihood);
+            }
+        }
+
+        double[] stream = new double[STREAM];
+        Random random = new Random(312);
+        for (int i = 0; i < STREAM; i++) {
+            stream[i] = 3 + 2 * random.nextInt(3) + random.nextGaussian();
+        }
+        GaussianMixture.Fit batch = mixture.fit(stream);
+        for (int round = 0; round < 2; round++) {      // the first round is the warm up
+            OnlineEM online = new OnlineEM(mixture, firstBatchMeans(mixture, stream), EM.SIGMA * EM.SIGMA);
+            long start = System.nanoTime();
+            for (int from = 0; from < STREAM; from += BATCH) {
+                online.update(stream, from, Math.min(STREAM, from + BATCH));
+            }
+            long nanos = System.nanoTime() - start;
+            if (round == 1) {
+                System.out.printf("stream of %d:\t%.0f observations/s, one pass; max |online - batch| mean %.5f\n",
+                        STREAM, STREAM / (nanos / 1e9), maxDifference(online.snapshot().means(), batch.means));
+            }
+        }
+    }
+
+    // the usual min/median/max start, from the first mini-batch only
+    private static double[] firstBatchMeans(GaussianMixture mixture, double[] stream) {
+        return mixture.initialMeans(Arrays.copyOf(stream, Math.min(BATCH, stream.length)));
+    }
+
+    private static double logLikelihood(OnlineEM.Estimate estimate, double[] data) {
+        double sum = 0.0;
+        for (double x : data) {
+            sum += estimate.logDensity(x);
+        }
+        return sum;
+    }
+
+    private static double maxDifference(double[] a, double[] b) {
+        double max = 0.0;
+        for (int i = 0; i < a.length; i++) {
+            max = Math.max(max, Math.abs(a[i] - b[i]));
+        }
+        return max;
+    }
+
+    private static void shuffle(double[] a, Random random) {
+        for (int i = a.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            double t = a[i];
+            a[i] = a[j];
+            a[j] = t;
+        }
+    }
+}
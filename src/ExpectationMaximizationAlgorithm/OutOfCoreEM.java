@@ -0,0 +1,155 @@
+package ExpectationMaximizationAlgorithm;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.concurrent.*;
+
+/**
+ * EM over a data set file written by DatasetConverter, without ever loading the data set.
+ *
+ * Every iteration is one sequential pass over the memory mapped file: each block of points is reduced to the
+ * EMKernel sufficient statistics on the pool, and only those nine sums are kept, so the memory used does not
+ * depend on the number of points. The initial means are the same as EM's, the minimum, the maximum and the
+ * (n/2)-th smallest point, found by a radix selection over a few passes instead of sorting. On a data set that fits
+ * in one block the output is exactly that of EM.
+ *
+ * Usage: OutOfCoreEM dataset.bin
+ */
+public class OutOfCoreEM {
+    private static final int DIGIT_BITS = 16;
+    private static final int DIGITS = 1 << DIGIT_BITS;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: OutOfCoreEM dataset.bin");
+            System.exit(1);
+        }
+        try (MappedDataset dataset = new MappedDataset(Paths.get(args[0]))) {
+            if (dataset.size() < 2) {
+                System.err.println("Need at least two points.");
+                System.exit(1);
+            }
+            run(dataset, ForkJoinPool.commonPool());
+        }
+    }
+
+    // iterate until converged, printing the table EM prints, and stop on the failures EM stops on
+    private static void run(MappedDataset dataset, ForkJoinPool pool) throws IOException {
+        long n = dataset.size();
+        double[] currTheta = initialTheta(dataset);
+        double[] nextTheta = new double[3];
+
+        System.out.printf("i\t\tu_1\t\tu_2\t\tu_3\t\tLogLihood\n");
+        System.out.printf("[1,]\t%.5f\t%.5f\t%.5f\t%.5f\n", currTheta[0], currTheta[1], currTheta[2], 0.0);
+
+        StoppingRule rule = StoppingRule.parameterChange(EM.EPSILON);
+        boolean converged = false;
+        boolean diverged = false;
+        int it = 2;
+        while (!converged && !diverged && it <= EM.MAX_ITERATIONS + 1) {
+            double[] stats = statistics(dataset, currTheta, pool);
+            double log = EMKernel.maximize(stats, n, nextTheta);
+
+            diverged = StoppingRule.diverged(nextTheta, log);
+            converged = !diverged && rule.converged(it - 1, currTheta, nextTheta, Double.NaN, log);
+
+            System.out.printf("[%d,]\t", it);
+            for (int i = 0; i < 3; i++) {
+                currTheta[i] = nextTheta[i];
+                System.out.printf("%.5f\t", nextTheta[i]);
+            }
+            System.out.printf("%.5f\n", log);
+            it++;
+        }
+        if (!converged) {
+            System.err.println(diverged ? "Diverged: a mean or the log likelihood is not finite."
+                    : "Not converged after " + EM.MAX_ITERATIONS + " iterations.");
+            System.exit(1);
+        }
+    }
+
+    /**
+     * The EMKernel sufficient statistics of a whole data set, in one pass over the file. Blocks are reduced in
+     * parallel with ParallelEM and added in file order, so the result does not depend on the pool.
+     *
+     * @param dataset the data set
+     * @param theta   the current means
+     * @param pool    the pool the blocks are reduced on
+     * @return the EMKernel.STATS sums over all points
+     * @throws IOException if the file cannot be read
+     */
+    public static double[] statistics(MappedDataset dataset, double[] theta, ForkJoinPool pool) throws IOException {
+        double[] stats = new double[EMKernel.STATS];
+        dataset.forEachBlock((block, length) -> {
+            double[] blockStats = ParallelEM.statistics(block, length, theta, pool);
+            for (int i = 0; i < EMKernel.STATS; i++) {
+                stats[i] += blockStats[i];
+            }
+        });
+        return stats;
+    }
+
+    /**
+     * EM's initial means: the minimum, the (n/2)-th smallest point and the maximum.
+     *
+     * @param dataset the data set, with at least two points
+     * @return the three means
+     * @throws IOException if the file cannot be read
+     */
+    public static double[] initialTheta(MappedDataset dataset) throws IOException {
+        double[] minMax = {Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY};
+        dataset.forEachBlock((block, length) -> {
+            for (int j = 0; j < length; j++) {
+                minMax[0] = Math.min(minMax[0], block[j]);
+                minMax[1] = Math.max(minMax[1], block[j]);
+            }
+        });
+        return new double[]{minMax[0], select(dataset, dataset.size() / 2 - 1), minMax[1]};
+    }
+
+    /**
+     * The rank-th smallest point, as Arrays.sort would order them, found by a most significant digit first radix
+     * selection: every pass counts the next 16 bits of the points whose higher bits match the ones already chosen,
+     * and picks the digit holding the rank. Four passes, whatever the number of points.
+     *
+     * @param dataset the data set
+     * @param rank    the rank, from 0
+     * @return the point
+     * @throws IOException if the file cannot be read
+     */
+    public static double select(MappedDataset dataset, long rank) throws IOException {
+        long prefix = 0;
+        for (int shift = Long.SIZE - DIGIT_BITS; shift >= 0; shift -= DIGIT_BITS) {
+            long[] counts = new long[DIGITS];
+            int bits = shift;
+            long highMask = shift == Long.SIZE - DIGIT_BITS ? 0 : -1L << (shift + DIGIT_BITS);
+            long high = prefix;
+            dataset.forEachBlock((block, length) -> {
+                for (int j = 0; j < length; j++) {
+                    long key = sortableKey(block[j]);
+                    if ((key & highMask) == high) {
+                        counts[(int) (key >>> bits) & (DIGITS - 1)]++;
+                    }
+                }
+            });
+            int digit = 0;
+            while (rank >= counts[digit]) {
+                rank -= counts[digit];
+                digit++;
+            }
+            prefix |= (long) digit << shift;
+        }
+        return fromSortableKey(prefix);
+    }
+
+    // a key whose unsigned order is the order of Double.compare
+    private static long sortableKey(double x) {
+        long bits = Double.doubleToLongBits(x);
+        return bits ^ ((bits >> 63) | Long.MIN_VALUE);
+    }
+
+    private static double fromSortableKey(long key) {
+        long bits = key < 0 ? key ^ Long.MIN_VALUE : ~key;
+        return Double.longBitsToDouble(bits);
+    }
+}
@@ -0,0 +1,117 @@
+package ExpectationMaximizationAlgorithm;
+
+import java.util.concurrent.*;
+
+/**
+ * Runs EM iterations as a map-reduce over a ForkJoinPool.
+ *
+ * The data is cut into chunks of CHUNK points. Every chunk computes its own EMKernel sufficient statistics into
+ * its own array, so nothing is shared while the points are processed, and the partial sums are added pairwise up
+ * a binary tree over the chunks. The chunks and the tree only depend on the number of points, never on the
+ * number of threads or on which thread ran what, so every run gives bit for bit the same result as
+ * reduceSequentially, which walks the same tree on one thread.
+ */
+public class ParallelEM {
+    static final int CHUNK = 1 << 14;
+
+    /**
+     * Run one EM iteration on the common pool.
+     *
+     * @param data      the data set
+     * @param currTheta the current means
+     * @param nextTheta receives the next means
+     * @return the log likelihood at the next means
+     */
+    public static double iterate(double[] data, double[] currTheta, double[] nextTheta) {
+        return iterate(data, currTheta, nextTheta, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Run one EM iteration on the given pool.
+     *
+     * @param data      the data set
+     * @param currTheta the current means
+     * @param nextTheta receives the next means
+     * @param pool      the pool the chunks run on
+     * @return the log likelihood at the next means
+     */
+    public static double iterate(double[] data, double[] currTheta, double[] nextTheta, ForkJoinPool pool) {
+        double[] stats = statistics(data, data.length, currTheta, pool);
+        return EMKernel.maximize(stats, data.length, nextTheta);
+    }
+
+    /**
+     * Compute the sufficient statistics of data[0, length) on the given pool, with the same chunks and order of
+     * additions as iterate.
+     *
+     * @param data   the data set
+     * @param length the number of points of data in use
+     * @param theta  the current means
+     * @param pool   the pool the chunks run on
+     * @return the EMKernel.STATS sums over the points
+     */
+    public static double[] statistics(double[] data, int length, double[] theta, ForkJoinPool pool) {
+        return pool.invoke(new ChunkTask(data, length, theta, 0, chunks(length)));
+    }
+
+    /**
+     * Compute the sufficient statistics with the same chunks and the same order of additions as iterate, on the
+     * calling thread.
+     *
+     * @param data  the data set
+     * @param theta the current means
+     * @return the EMKernel.STATS sums over all points
+     */
+    public static double[] reduceSequentially(double[] data, double[] theta) {
+        return new ChunkTask(data, data.length, theta, 0, chunks(data.length)).compute();
+    }
+
+    private static int chunks(int n) {
+        return Math.max(1, (n + CHUNK - 1) / CHUNK);
+    }
+
+    // the sufficient statistics of chunks [from, to)
+    @SuppressWarnings("serial")     // a task is never serialized
+    private static class ChunkTask extends RecursiveTask<double[]> {
+        private final double[] data;
+        private final int length;
+        private final double[] theta;
+        private final int from;
+        private final int to;
+
+        ChunkTask(double[] data, int length, double[] theta, int from, int to) {
+            this.data = data;
+            this.length = length;
+            this.theta = theta;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected double[] compute() {
+            if (to - from == 1) {
+                double[] stats = new double[EMKernel.STATS];
+                EMKernel.accumulate(data, from * CHUNK, Math.min(length, (from + 1) * CHUNK), theta, stats);
+                return stats;
+            }
+            int mid = (from + to) >>> 1;
+            ChunkTask left = new ChunkTask(data, length, theta, from, mid);
+            ChunkTask right = new ChunkTask(data, length, theta, mid, to);
+            double[] rightStats;
+            double[] leftStats;
+            if (inForkJoinPool()) {
+                left.fork();
+                rightStats = right.compute();
+                leftStats = left.join();
+            } else {
+                leftStats = left.compute();
+                rightStats = right.compute();
+            }
+            // always left + right, whichever finished first
+            for (int i = 0; i < EMKernel.STATS; i++) {
+                leftStats[i] += rightStats[i];
+            }
+            return leftStats;
+        }
+    }
+}
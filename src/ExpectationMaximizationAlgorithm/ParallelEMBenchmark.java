@@ -0,0 +1,50 @@
+package ExpectationMaximizationAlgorithm;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Measures how ParallelEM scales with the number of threads, and checks that every thread count gives exactly
+ * the result of the fixed-order sequential reduction.
+ *
+ * Usage: ParallelEMBenchmark [n [iterations]]
+ */
+public class ParallelEMBenchmark {
+    public static void main(String[] args) {
+        int n = args.length >= 1 ? Integer.parseInt(args[0]) : 10_000_000;
+        int iterations = args.length >= 2 ? Integer.parseInt(args[1]) : 10;
+        double[] data = EMBenchmark.sample(n, new Random(312));
+        double[] theta = {data[0], data[n / 2], data[n - 1]};
+
+        double[] expected = new double[3];
+        double expectedLog = EMKernel.maximize(ParallelEM.reduceSequentially(data, theta), n, expected);
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        double single = 0;
+        System.out.printf("n = %d, %d cores\n", n, cores);
+        for (int threads = 1; threads <= cores; threads = threads == cores ? cores + 1 : Math.min(threads * 2, cores)) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            double[] next = new double[3];
+            double log = 0;
+            long best = Long.MAX_VALUE;
+            for (int round = 0; round < 2; round++) {      // the first round is the warm up
+                long start = System.nanoTime();
+                for (int i = 0; i < iterations; i++) {
+                    log = ParallelEM.iterate(data, theta, next, pool);
+                }
+                best = Math.min(best, System.nanoTime() - start);
+            }
+            pool.shutdown();
+            if (log != expectedLog || !Arrays.equals(next, expected)) {
+                System.err.println(threads + " threads differ from the sequential reduction");
+                System.exit(1);
+            }
+            double ms = best / 1e6 / iterations;
+            if (threads == 1) {
+                single = ms;
+            }
+            System.out.printf("%d threads:\t%.2f ms/iteration\tspeedup %.2fx\n", threads, ms, single / ms);
+        }
+        System.out.println("all thread counts identical to the sequential reduction");
+    }
+}
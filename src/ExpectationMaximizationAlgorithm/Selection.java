@@ -0,0 +1,87 @@
+package ExpectationMaximizationAlgorithm;
+
+import java.util.*;
+
+/**
+ * Order statistics by quickselect, in expected linear time instead of the n log n of sorting the whole array.
+ */
+public class Selection {
+    private static final int SMALL_RANGE = 16;     // sorted rather than partitioned
+
+    /**
+     * Partially order a so that a[rank] holds what it would hold sorted, with nothing greater before it and
+     * nothing smaller after it.
+     *
+     * @param a    the array, reordered in place
+     * @param rank the rank, from 0
+     * @return a[rank]
+     */
+    public static double select(double[] a, int rank) {
+        return select(a, 0, a.length, rank);
+    }
+
+    /**
+     * Select several ranks of the same array. Each selection only searches what lies after the previous rank.
+     *
+     * @param a     the array, reordered in place
+     * @param ranks the ranks, from 0, in any order
+     * @return the values at the ranks, in the order of ranks
+     */
+    public static double[] orderStatistics(double[] a, int... ranks) {
+        Integer[] order = new Integer[ranks.length];
+        for (int i = 0; i < ranks.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingInt(i -> ranks[i]));
+        double[] values = new double[ranks.length];
+        int from = 0;
+        for (int i : order) {
+            int rank = ranks[i];
+            values[i] = rank < from ? a[rank] : select(a, from, a.length, rank);
+            from = rank + 1;
+        }
+        return values;
+    }
+
+    // select within a[from, to), which holds rank
+    private static double select(double[] a, int from, int to, int rank) {
+        if (rank < from || rank >= to) {
+            throw new IndexOutOfBoundsException("Rank " + rank + " outside [" + from + ", " + to + ")");
+        }
+        while (to - from > SMALL_RANGE) {
+            double pivot = median(a[from], a[(from + to) >>> 1], a[to - 1]);
+            // three way partition: [from, lt) < pivot, [lt, gt] == pivot, (gt, to) > pivot
+            int lt = from;
+            int gt = to - 1;
+            int i = from;
+            while (i <= gt) {
+                if (a[i] < pivot) {
+                    swap(a, lt++, i++);
+                } else if (a[i] > pivot) {
+                    swap(a, i, gt--);
+                } else {
+                    i++;
+                }
+            }
+            if (rank < lt) {
+                to = lt;
+            } else if (rank > gt) {
+                from = gt + 1;
+            } else {
+                return pivot;
+            }
+        }
+        Arrays.sort(a, from, to);
+        return a[rank];
+    }
+
+    private static double median(double x, double y, double z) {
+        return Math.max(Math.min(x, y), Math.min(Math.max(x, y), z));
+    }
+
+    private static void swap(double[] a, int i, int j) {
+        double t = a[i];
+        a[i] = a[j];
+        a[j] = t;
+    }
+}
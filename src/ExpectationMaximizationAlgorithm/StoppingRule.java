@@ -0,0 +1,98 @@
+package ExpectationMaximizationAlgorithm;
+
+/**
+ * Decides when an EM iteration has converged, from the parameters and log likelihoods before and after an
+ * iteration. Rules combine with or(). No rule converges on parameters that are not finite: loops check diverged()
+ * first, and stop there with a failure.
+ */
+public interface StoppingRule {
+    /**
+     * @param iterations            the number of iterations done so far, at least 1
+     * @param previous              the parameters before the last iteration
+     * @param current               the parameters after the last iteration
+     * @param previousLogLikelihood the log likelihood at previous
+     * @param logLikelihood         the log likelihood at current
+     * @return whether to stop
+     */
+    boolean converged(int iterations, double[] previous, double[] current, double previousLogLikelihood,
+                      double logLikelihood);
+
+    /**
+     * @param other another rule
+     * @return a rule that stops as soon as this or the other one does
+     */
+    default StoppingRule or(StoppingRule other) {
+        return (iterations, previous, current, previousLogLikelihood, logLikelihood) ->
+                converged(iterations, previous, current, previousLogLikelihood, logLikelihood)
+                        || other.converged(iterations, previous, current, previousLogLikelihood, logLikelihood);
+    }
+
+    /**
+     * Stop when no parameter moved by epsilon or more, in either direction.
+     *
+     * @param epsilon the largest absolute change of a converged parameter
+     * @return the rule
+     */
+    static StoppingRule parameterChange(double epsilon) {
+        return (iterations, previous, current, previousLogLikelihood, logLikelihood) -> {
+            for (int i = 0; i < current.length; i++) {
+                if (!(Math.abs(current[i] - previous[i]) < epsilon)) {
+                    return false;
+                }
+            }
+            return true;
+        };
+    }
+
+    /**
+     * Stop when the log likelihood changed by less than epsilon.
+     *
+     * @param epsilon the absolute change
+     * @return the rule
+     */
+    static StoppingRule logLikelihoodChange(double epsilon) {
+        return (iterations, previous, current, previousLogLikelihood, logLikelihood) ->
+                Math.abs(logLikelihood - previousLogLikelihood) < epsilon;
+    }
+
+    /**
+     * Stop when the log likelihood changed by less than epsilon times its magnitude, which does not depend on the
+     * number of points the way an absolute change does.
+     *
+     * @param epsilon the relative change
+     * @return the rule
+     */
+    static StoppingRule relativeLogLikelihoodChange(double epsilon) {
+        return (iterations, previous, current, previousLogLikelihood, logLikelihood) ->
+                Math.abs(logLikelihood - previousLogLikelihood) < epsilon * Math.abs(logLikelihood);
+    }
+
+    /**
+     * Whether an iteration left the parameter space, for instance when every point is so far from every mean that
+     * the responsibilities are 0 / 0: a parameter or the log likelihood is NaN or infinite, and every later
+     * iteration would be too.
+     *
+     * @param current       the parameters after the iteration
+     * @param logLikelihood the log likelihood at current
+     * @return whether to stop with a failure
+     */
+    static boolean diverged(double[] current, double logLikelihood) {
+        if (!Double.isFinite(logLikelihood)) {
+            return true;
+        }
+        for (double parameter : current) {
+            if (!Double.isFinite(parameter)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param maxIterations the number of iterations
+     * @return a rule that stops after that many iterations
+     */
+    static StoppingRule maxIterations(int maxIterations) {
+        return (iterations, previous, current, previousLogLikelihood, logLikelihood) -> iterations >= maxIterations;
+    }
+}
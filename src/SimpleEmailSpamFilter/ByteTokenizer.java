@@ -0,0 +1,234 @@
+package SimpleEmailSpamFilter;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Splits an email into its distinct whitespace separated tokens without going through Scanner or String.
+ *
+ * The file is read through a FileChannel into a buffer that is reused for every email, and the tokens are found
+ * over the raw bytes. Every token is hashed as it is scanned, and the distinct tokens of a document are kept as
+ * byte ranges in an open-addressing table, so a duplicate costs no allocation at all. The distinct tokens are
+ * handed to a TokenSink as (bytes, offset, length, hash); it is up to the sink to make a String out of it, and
+ * most sinks (see Vocabulary) never do.
+ *
+ * Like the Scanner version, the first token of every email (the "Subject:" header) is skipped. Tokens are
+ * separated by the ASCII characters Character.isWhitespace accepts; the emails are plain ASCII.
+ *
+ * An instance is not thread safe, and a buffer passed to a sink is only valid during the call.
+ */
+public class ByteTokenizer {
+    private static final int INITIAL_BUFFER = 1 << 16;
+    private static final int INITIAL_TABLE = 1 << 10;    // a power of two
+    private static final boolean[] WHITESPACE = new boolean[256];
+
+    static {
+        for (int c = 0; c < 128; c++) {
+            WHITESPACE[c] = Character.isWhitespace(c);
+        }
+    }
+
+    /**
+     * Receives the distinct tokens of a document.
+     */
+    public interface TokenSink {
+        /**
+         * Called once for each distinct token of a document, in order of first appearance.
+         *
+         * @param buf  the buffer holding the token
+         * @param off  the offset of the token in buf
+         * @param len  the length of the token in bytes
+         * @param hash the hash of the token, as computed by ByteTokenizer.hash
+         */
+        void token(byte[] buf, int off, int len, int hash);
+    }
+
+    private ByteBuffer buffer = ByteBuffer.allocate(INITIAL_BUFFER);
+
+    // the per-document dedup table; a slot is in use iff its stamp is the stamp of the current document
+    private int[] slotOff = new int[INITIAL_TABLE];
+    private int[] slotLen = new int[INITIAL_TABLE];
+    private int[] slotHash = new int[INITIAL_TABLE];
+    private int[] slotStamp = new int[INITIAL_TABLE];
+    private int stamp = 0;
+    private int used;
+
+    /**
+     * Hash the bytes of a token. Vocabulary relies on it being the hash the tokenizer reports.
+     *
+     * @param buf the buffer holding the token
+     * @param off the offset of the token in buf
+     * @param len the length of the token in bytes
+     * @return the hash of the token
+     */
+    public static int hash(byte[] buf, int off, int len) {
+        int h = 0;
+        for (int i = off; i < off + len; i++) {
+            h = 31 * h + buf[i];
+        }
+        return mix(h);
+    }
+
+    // spread the bits of a polynomial hash (the murmur3 finalizer)
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    /**
+     * Hand the distinct tokens of an email file to a sink.
+     *
+     * @param file the email
+     * @param sink receives every distinct token once
+     * @return the number of distinct tokens
+     * @throws IOException if the file cannot be read
+     */
+    public int tokenize(File file, TokenSink sink) throws IOException {
+        return tokenize(read(file), buffer.position(), sink);
+    }
+
+    /**
+     * Hand the distinct tokens of an email held in memory to a sink.
+     *
+     * @param doc  the bytes of the email
+     * @param len  the number of bytes of doc in use
+     * @param sink receives every distinct token once
+     * @return the number of distinct tokens
+     */
+    public int tokenize(byte[] doc, int len, TokenSink sink) {
+        newDocument();
+        int i = 0;
+        boolean first = true;   // ignoring "Subject"
+        while (i < len) {
+            while (i < len && WHITESPACE[doc[i] & 0xff]) {
+                i++;
+            }
+            if (i == len) {
+                break;
+            }
+            int start = i;
+            int h = 0;
+            while (i < len && !WHITESPACE[doc[i] & 0xff]) {
+                h = 31 * h + doc[i];
+                i++;
+            }
+            if (first) {
+                first = false;
+            } else {
+                h = mix(h);
+                if (addIfAbsent(doc, start, i - start, h)) {
+                    sink.token(doc, start, i - start, h);
+                }
+            }
+        }
+        return used;
+    }
+
+    /**
+     * Get all words in an email file with no duplicate and ignore the "Subject", as Strings.
+     *
+     * @param file the email
+     * @return the distinct words of the email
+     * @throws IOException if the file cannot be read
+     */
+    public HashSet<String> tokenSet(File file) throws IOException {
+        HashSet<String> tokens = new HashSet<>();
+        tokenize(file, (buf, off, len, hash) -> tokens.add(new String(buf, off, len, StandardCharsets.UTF_8)));
+        return tokens;
+    }
+
+    // read the whole file into the reused buffer and return its backing array; position() is the length
+    private byte[] read(File file) throws IOException {
+        buffer = read(file, buffer);
+        return buffer.array();
+    }
+
+    /**
+     * Read a whole email file into a heap buffer, growing it as needed.
+     *
+     * @param file   the email
+     * @param buffer the buffer to reuse
+     * @return the buffer holding the file, buffer itself unless it was too small; position() is the length
+     * @throws IOException if the file cannot be read or is 2^30 bytes or more
+     */
+    static ByteBuffer read(File file, ByteBuffer buffer) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size >= 1 << 30) {     // the buffer doubles past the size, and 2^31 is no array length
+                throw new IOException("Email too large: " + file);
+            }
+            if (size >= buffer.capacity()) {
+                buffer = ByteBuffer.allocate(Integer.highestOneBit((int) size) << 1);
+            }
+            buffer.clear();
+            int read;
+            do {
+                read = channel.read(buffer);
+            } while (read >= 0 && buffer.hasRemaining());
+            return buffer;
+        }
+    }
+
+    private void newDocument() {
+        used = 0;
+        if (++stamp == 0) {     // the stamps wrapped around; forget every slot for real
+            Arrays.fill(slotStamp, 0);
+            stamp = 1;
+        }
+    }
+
+    // add the token to the dedup table; return true iff it was not in the document yet
+    private boolean addIfAbsent(byte[] doc, int off, int len, int hash) {
+        int mask = slotStamp.length - 1;
+        int slot = hash & mask;
+        while (slotStamp[slot] == stamp) {
+            if (slotHash[slot] == hash && slotLen[slot] == len
+                    && Arrays.equals(doc, slotOff[slot], slotOff[slot] + len, doc, off, off + len)) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        slotStamp[slot] = stamp;
+        slotOff[slot] = off;
+        slotLen[slot] = len;
+        slotHash[slot] = hash;
+        if (++used * 2 > slotStamp.length) {
+            grow();
+        }
+        return true;
+    }
+
+    // double the dedup table, keeping the slots of the current document
+    private void grow() {
+        int[] oldOff = slotOff;
+        int[] oldLen = slotLen;
+        int[] oldHash = slotHash;
+        int[] oldStamp = slotStamp;
+        int capacity = oldStamp.length * 2;
+        slotOff = new int[capacity];
+        slotLen = new int[capacity];
+        slotHash = new int[capacity];
+        slotStamp = new int[capacity];
+        int mask = capacity - 1;
+        for (int i = 0; i < oldStamp.length; i++) {
+            if (oldStamp[i] == stamp) {
+                int slot = oldHash[i] & mask;
+                while (slotStamp[slot] == stamp) {
+                    slot = (slot + 1) & mask;
+                }
+                slotStamp[slot] = stamp;
+                slotOff[slot] = oldOff[i];
+                slotLen[slot] = oldLen[i];
+                slotHash[slot] = oldHash[i];
+            }
+        }
+    }
+}
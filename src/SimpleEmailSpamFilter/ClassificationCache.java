@@ -0,0 +1,480 @@
+package SimpleEmailSpamFilter;
+
+import java.io.*;
+import java.lang.invoke.*;
+import java.nio.*;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.*;
+
+/**
+ * Remembers the labels of the emails a SpamClassifier has seen, so that copies of an email (a bulk spam campaign,
+ * a newsletter) are labelled without being tokenized and scored again.
+ *
+ * Two tiers sit in front of the classifier:
+ *  - exact: an email is found by a 64 bit hash of its bytes, and its bytes are compared with those of the cached
+ *    email before the label is used. A hit costs two passes over the bytes and no tokenizing; the tier keeps a
+ *    copy of every email it holds.
+ *  - near duplicates (off unless withNearDuplicates made the cache): the MinHash signature of the distinct tokens
+ *    of an email is cut into bands, and an email sharing a band with a cached one whose signature agrees in at
+ *    least the given fraction of its positions (an estimate of the Jaccard similarity of their token sets) takes
+ *    its label. The label is then that of the cached email, not necessarily the one the classifier would give;
+ *    and a miss has tokenized the email once more, so this tier only pays in front of a classifier that costs
+ *    more per token than tokenizing.
+ *
+ * Each tier holds at most capacity emails and drops the least recently used ones (a LinkedHashMap in access
+ * order); the exact tier also holds at most maxBytes bytes of email copies, by default DEFAULT_BYTES_PER_EMAIL per
+ * email of capacity, and does not keep an email larger than that. Every lookup reads the version of the model
+ * under the lock of the tiers, so the lookups see the versions in one order; when it differs from the one the last
+ * lookup read, both tiers are emptied. A label computed while the version changed is not kept.
+ *
+ * The configuration of a cache is final. An instance can be shared by any number of threads; the classifier is
+ * called outside the lock of the tiers.
+ */
+public class ClassificationCache implements SpamClassifier {
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final long M1 = 0x9e3779b97f4a7c15L;
+    private static final long M2 = 0xc2b2ae3d27d4eb4fL;
+    /**
+     * The bytes of email copies the exact tier holds per email of capacity, unless withMaxBytes set a bound.
+     */
+    public static final int DEFAULT_BYTES_PER_EMAIL = 64 << 10;
+
+    private static final ThreadLocal<ByteTokenizer> TOKENIZER = ThreadLocal.withInitial(ByteTokenizer::new);
+    private static final ThreadLocal<ByteBuffer[]> BUFFER =
+            ThreadLocal.withInitial(() -> new ByteBuffer[]{ByteBuffer.allocate(1 << 16)});
+
+    private final SpamClassifier classifier;
+    private final int capacity;
+    private final long maxBytes;
+    private final LongSupplier version;
+    private final MinHash minHash;      // the near duplicate tier, or null
+
+    private final Object lock = new Object();
+    private long cachedVersion;
+    private long bytes;                     // held by the keys of exact
+    private final Map<Key, Entry> exact;
+    private final Map<Long, Entry> near;    // band key -> the last email with that band
+
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder nearHits = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    private final LongAdder savedNanos = new LongAdder();
+    private final LongAdder scoringNanos = new LongAdder();
+
+    /**
+     * Cache the labels of a classifier whose model never changes.
+     *
+     * @param classifier the classifier
+     * @param capacity   the number of emails each tier holds
+     */
+    public ClassificationCache(SpamClassifier classifier, int capacity) {
+        this(classifier, capacity, () -> 0);
+    }
+
+    /**
+     * Cache the labels of an OnlineModel, forgetting them whenever it learns or unlearns an email.
+     *
+     * @param model    the model
+     * @param capacity the number of emails each tier holds
+     */
+    public ClassificationCache(OnlineModel model, int capacity) {
+        this(model, capacity, model::version);
+    }
+
+    /**
+     * Cache the labels of a classifier whose model may change.
+     *
+     * @param classifier the classifier
+     * @param capacity   the number of emails each tier holds
+     * @param version    a number that changes whenever the labels of the classifier may change
+     */
+    public ClassificationCache(SpamClassifier classifier, int capacity, LongSupplier version) {
+        this(classifier, capacity, (long) capacity * DEFAULT_BYTES_PER_EMAIL, version, null);
+    }
+
+    private ClassificationCache(SpamClassifier classifier, int capacity, long maxBytes, LongSupplier version,
+                                MinHash minHash) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Need room for at least one email");
+        }
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("Need a bound of at least 0 bytes");
+        }
+        this.classifier = classifier;
+        this.capacity = capacity;
+        this.maxBytes = maxBytes;
+        this.version = version;
+        this.minHash = minHash;
+        int nearCapacity = minHash == null ? 0 : capacity * minHash.bands;
+        cachedVersion = version.getAsLong();
+        exact = new LinkedHashMap<>(16, 0.75f, true);     // bounded by putExact
+        near = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+                return evict(size() > nearCapacity);
+            }
+        };
+    }
+
+    /**
+     * An empty cache of the same classifier, capacity and version that also labels the emails close to a cached
+     * one. The chance that two emails of Jaccard similarity s share a band is 1 - (1 - s^rows)^bands.
+     *
+     * @param bands      the number of bands of the MinHash signature
+     * @param rows       the number of MinHash values per band
+     * @param similarity the fraction of equal signature values an email needs to take a cached label, 0 to 1
+     * @param seed       the seed of the MinHash functions
+     * @return the new cache
+     */
+    public ClassificationCache withNearDuplicates(int bands, int rows, double similarity, long seed) {
+        return new ClassificationCache(classifier, capacity, maxBytes, version,
+                new MinHash(bands, rows, similarity, seed));
+    }
+
+    /**
+     * An empty cache of the same configuration whose exact tier holds at most the given bytes of email copies.
+     *
+     * @param maxBytes the bound; an email larger than it is labelled but not kept
+     * @return the new cache
+     */
+    public ClassificationCache withMaxBytes(long maxBytes) {
+        return new ClassificationCache(classifier, capacity, maxBytes, version, minHash);
+    }
+
+    /**
+     * Check if an email file is spam.
+     *
+     * @param file the email
+     * @return the cached label of the email, or else the label of the classifier
+     * @throws IOException if the file cannot be read
+     */
+    @Override
+    public boolean isSpam(File file) throws IOException {
+        ByteBuffer[] buffer = BUFFER.get();
+        buffer[0] = ByteTokenizer.read(file, buffer[0]);
+        return isSpam(buffer[0].array(), buffer[0].position());
+    }
+
+    /**
+     * Check if an email held in memory is spam.
+     *
+     * @param doc the bytes of the email
+     * @param len the number of bytes of doc in use
+     * @return the cached label of the email, or else the label of the classifier
+     */
+    @Override
+    public boolean isSpam(byte[] doc, int len) {
+        Key key = new Key(doc, len, hash(doc, len));
+        lookups.increment();
+        long current;
+        Entry entry;
+        synchronized (lock) {
+            // read under the lock: a version read before it could be older than the one the tiers hold
+            current = version.getAsLong();
+            if (current != cachedVersion) {
+                exact.clear();
+                bytes = 0;
+                near.clear();
+                cachedVersion = current;
+                invalidations.increment();
+            }
+            entry = exact.get(key);
+        }
+        if (entry != null) {
+            hits.increment();
+            savedNanos.add(entry.nanos);
+            return entry.isSpam;
+        }
+
+        int[] signature = null;
+        long[] bandKeys = null;
+        if (minHash != null) {
+            signature = minHash.signature(doc, len);
+            if (signature != null) {
+                bandKeys = minHash.bandKeys(signature);
+                Entry similar = findSimilar(signature, bandKeys, current);
+                if (similar != null) {
+                    nearHits.increment();
+                    savedNanos.add(similar.nanos);
+                    Key copy = len <= maxBytes ? key.copy() : null;
+                    synchronized (lock) {
+                        if (cachedVersion == current && copy != null) {
+                            putExact(copy, similar);
+                        }
+                    }
+                    return similar.isSpam;
+                }
+            }
+        }
+
+        long start = System.nanoTime();
+        boolean isSpam = classifier.isSpam(doc, len);
+        long nanos = System.nanoTime() - start;
+        scoringNanos.add(nanos);
+        entry = new Entry(isSpam, nanos, signature);
+        Key copy = len <= maxBytes ? key.copy() : null;
+        synchronized (lock) {
+            if (cachedVersion == current && version.getAsLong() == current) {
+                if (copy != null) {
+                    putExact(copy, entry);
+                }
+                if (bandKeys != null) {
+                    for (long bandKey : bandKeys) {
+                        near.put(bandKey, entry);
+                    }
+                }
+            }
+        }
+        return isSpam;
+    }
+
+    // under the lock: keep a copied key, then drop the least recently used emails until both bounds hold
+    private void putExact(Key copy, Entry entry) {
+        if (exact.put(copy, entry) == null) {
+            bytes += copy.len;
+        }
+        Iterator<Key> eldest = exact.keySet().iterator();
+        while (exact.size() > capacity || bytes > maxBytes) {
+            bytes -= eldest.next().len;
+            eldest.remove();
+            evictions.increment();
+        }
+    }
+
+    // the cached email sharing a band with the signature and agreeing in enough of its values, or null
+    private Entry findSimilar(int[] signature, long[] bandKeys, long current) {
+        synchronized (lock) {
+            if (cachedVersion != current) {
+                return null;
+            }
+            for (long bandKey : bandKeys) {
+                Entry candidate = near.get(bandKey);
+                if (candidate != null && agreement(signature, candidate.signature) >= minHash.similarity) {
+                    return candidate;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static double agreement(int[] a, int[] b) {
+        int equal = 0;
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] == b[i]) {
+                equal++;
+            }
+        }
+        return 1.0 * equal / a.length;
+    }
+
+    // the MinHash functions of the near duplicate tier and how signatures are cut into bands
+    private static final class MinHash {
+        final int bands;
+        final int rows;
+        final double similarity;
+        final long[] multipliers;   // odd, one per MinHash function
+        final long[] increments;
+
+        MinHash(int bands, int rows, double similarity, long seed) {
+            if (bands < 1 || rows < 1) {
+                throw new IllegalArgumentException("Need at least one band of one row");
+            }
+            this.bands = bands;
+            this.rows = rows;
+            this.similarity = similarity;
+            Random random = new Random(seed);
+            multipliers = new long[bands * rows];
+            increments = new long[bands * rows];
+            for (int i = 0; i < multipliers.length; i++) {
+                multipliers[i] = random.nextLong() | 1;
+                increments[i] = random.nextLong();
+            }
+        }
+
+        // the signature of the distinct tokens of an email, or null if it has none
+        int[] signature(byte[] doc, int len) {
+            int[] signature = new int[multipliers.length];
+            Arrays.fill(signature, Integer.MAX_VALUE);
+            int tokens = TOKENIZER.get().tokenize(doc, len, (buf, off, tokenLen, hash) -> {
+                for (int i = 0; i < signature.length; i++) {
+                    int value = (int) ((multipliers[i] * hash + increments[i]) >>> 33);    // 31 bits, never negative
+                    if (value < signature[i]) {
+                        signature[i] = value;
+                    }
+                }
+            });
+            return tokens == 0 ? null : signature;
+        }
+
+        // one key per band: the band number and its rows, hashed
+        long[] bandKeys(int[] signature) {
+            long[] keys = new long[bands];
+            for (int band = 0; band < bands; band++) {
+                long h = band * M1;
+                for (int row = band * rows; row < (band + 1) * rows; row++) {
+                    h = Long.rotateLeft(h ^ (signature[row] * M2), 31) * M1;
+                }
+                keys[band] = mix(h);
+            }
+            return keys;
+        }
+    }
+
+    /**
+     * Hash the bytes of an email, eight at a time.
+     *
+     * @param doc the bytes of the email
+     * @param len the number of bytes of doc in use
+     * @return a 64 bit hash of the bytes
+     */
+    public static long hash(byte[] doc, int len) {
+        long h = len * M1;
+        int i = 0;
+        for (; i + 8 <= len; i += 8) {
+            h = Long.rotateLeft(h ^ ((long) LONGS.get(doc, i) * M2), 31) * M1;
+        }
+        long tail = 0;
+        for (int shift = 0; i < len; i++, shift += 8) {
+            tail |= (doc[i] & 0xffL) << shift;
+        }
+        h = Long.rotateLeft(h ^ (tail * M2), 31) * M1;
+        return mix(h);
+    }
+
+    // the murmur3 64 bit finalizer
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private boolean evict(boolean full) {
+        if (full) {
+            evictions.increment();
+        }
+        return full;
+    }
+
+    // the bytes of an email and their hash; a lookup key is a view of the caller's array, a stored one a copy
+    private static final class Key {
+        final byte[] bytes;
+        final int len;
+        final long hash;
+
+        Key(byte[] bytes, int len, long hash) {
+            this.bytes = bytes;
+            this.len = len;
+            this.hash = hash;
+        }
+
+        Key copy() {
+            return new Key(Arrays.copyOf(bytes, len), len, hash);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return other.hash == hash && other.len == len && Arrays.equals(bytes, 0, len, other.bytes, 0, len);
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(hash);
+        }
+    }
+
+    // a label, what it cost the classifier, and the MinHash signature of the email when the near tier is on
+    private static final class Entry {
+        final boolean isSpam;
+        final long nanos;
+        final int[] signature;
+
+        Entry(boolean isSpam, long nanos, int[] signature) {
+            this.isSpam = isSpam;
+            this.nanos = nanos;
+            this.signature = signature;
+        }
+    }
+
+    /**
+     * @return the number of emails looked up
+     */
+    public long lookups() {
+        return lookups.sum();
+    }
+
+    /**
+     * @return the number of emails labelled from the exact tier
+     */
+    public long hits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return the number of emails labelled from the near duplicate tier
+     */
+    public long nearHits() {
+        return nearHits.sum();
+    }
+
+    /**
+     * @return the fraction of the emails looked up that were labelled from either tier
+     */
+    public double hitRate() {
+        long total = lookups.sum();
+        return total == 0 ? 0.0 : 1.0 * (hits.sum() + nearHits.sum()) / total;
+    }
+
+    /**
+     * @return the number of entries dropped from either tier to make room, one per band in the near duplicate tier
+     */
+    public long evictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return the bytes of email copies the exact tier holds
+     */
+    public long bytes() {
+        synchronized (lock) {
+            return bytes;
+        }
+    }
+
+    /**
+     * @return the number of times the tiers were emptied because the version of the model changed
+     */
+    public long invalidations() {
+        return invalidations.sum();
+    }
+
+    /**
+     * @return the time the classifier took on the emails whose cached labels were used, in nanoseconds
+     */
+    public long savedNanos() {
+        return savedNanos.sum();
+    }
+
+    /**
+     * @return the time spent in the classifier on misses, in nanoseconds
+     */
+    public long scoringNanos() {
+        return scoringNanos.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("lookups=%d hits=%d near=%d hitRate=%.3f evictions=%d invalidations=%d bytes=%d "
+                + "saved=%.1fms", lookups(), hits(), nearHits(), hitRate(), evictions(), invalidations(), bytes(),
+                savedNanos() / 1e6);
+    }
+}
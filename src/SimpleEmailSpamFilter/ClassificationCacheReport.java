@@ -0,0 +1,108 @@
+package SimpleEmailSpamFilter;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Replays a stream of mail with copies in it through ClassificationCache and reports the hit rate, the evictions,
+ * the scoring time saved and the time per email against the model alone, on emails held in memory.
+ *
+ * The stream draws from the test emails with a skewed popularity (a few campaigns are sent many times), and one
+ * in NEAR_COPIES of the emails has a line appended, the way bulk mail carries a per recipient footer: exact copies
+ * hit the exact tier, altered ones can only hit the near duplicate tier. The labels of the near duplicate tier are
+ * compared with those the model gives. Last, an OnlineModel learning one email shows the cache being emptied.
+ *
+ * Usage: ClassificationCacheReport [stream length [capacity]]
+ */
+public class ClassificationCacheReport {
+    private static final String TRAINSPAM = "./src/data/train/spam";
+    private static final String TRAINHAM = "./src/data/train/ham";
+    private static final String TEST = "./src/data/test/";
+    private static final int NEAR_COPIES = 4;
+    private static final int BANDS = 16;
+    private static final int ROWS = 4;
+    private static final double SIMILARITY = 0.8;
+
+    public static void main(String[] args) throws IOException {
+        int length = args.length >= 1 ? Integer.parseInt(args[0]) : 50_000;
+        int capacity = args.length >= 2 ? Integer.parseInt(args[1]) : 1024;
+        NaiveBayesModel model = NaiveBayesModel.train(TRAINHAM, TRAINSPAM, 1.0);
+        List<byte[]> originals = new ArrayList<>();
+        for (File file : ParallelTrainer.listFiles(TEST)) {
+            originals.add(Files.readAllBytes(file.toPath()));
+        }
+        List<byte[]> stream = stream(originals, length, new Random(312));
+
+        System.out.println("stream of " + stream.size() + " emails drawn from " + originals.size()
+                + ", capacity " + capacity);
+        long modelNanos = 0;
+        for (int warm = 0; warm < 2; warm++) {
+            modelNanos = time(model, stream);
+        }
+        System.out.printf("model alone:\t%.0f ns/email\n", 1.0 * modelNanos / stream.size());
+
+        for (boolean nearDuplicates : new boolean[]{false, true}) {
+            ClassificationCache cache = null;
+            long nanos = 0;
+            for (int warm = 0; warm < 2; warm++) {
+                cache = new ClassificationCache(model, capacity);
+                if (nearDuplicates) {
+                    cache = cache.withNearDuplicates(BANDS, ROWS, SIMILARITY, 312);
+                }
+                nanos = time(cache, stream);
+            }
+            String metrics = cache.toString();     // before the check below looks the stream up again
+            int differ = 0;
+            for (byte[] email : stream) {
+                if (cache.isSpam(email, email.length) != model.isSpam(email, email.length)) {
+                    differ++;
+                }
+            }
+            System.out.printf("%s:\t%.0f ns/email, %d labels differ from the model\n",
+                    nearDuplicates ? "exact + near" : "exact", 1.0 * nanos / stream.size(), differ);
+            System.out.println("\t\t" + metrics);
+        }
+
+        OnlineModel online = new OnlineModel(model);
+        ClassificationCache cache = new ClassificationCache(online, capacity);
+        byte[] email = originals.get(0);
+        cache.isSpam(email, email.length);
+        cache.isSpam(email, email.length);
+        online.train(email, email.length, true);
+        cache.isSpam(email, email.length);
+        System.out.println("online model:\t" + cache);
+    }
+
+    // length emails drawn with probability falling as 1 / rank, some of them with a line appended
+    private static List<byte[]> stream(List<byte[]> originals, int length, Random random) {
+        double[] cumulative = new double[originals.size()];
+        double total = 0.0;
+        for (int i = 0; i < cumulative.length; i++) {
+            total += 1.0 / (i + 1);
+            cumulative[i] = total;
+        }
+        List<byte[]> stream = new ArrayList<>(length);
+        for (int i = 0; i < length; i++) {
+            int index = Arrays.binarySearch(cumulative, random.nextDouble() * total);
+            byte[] email = originals.get(index < 0 ? Math.min(-index - 1, originals.size() - 1) : index);
+            if (random.nextInt(NEAR_COPIES) == 0) {
+                byte[] footer = ("\nrecipient " + random.nextInt(1_000_000) + "\n").getBytes(StandardCharsets.US_ASCII);
+                byte[] altered = Arrays.copyOf(email, email.length + footer.length);
+                System.arraycopy(footer, 0, altered, email.length, footer.length);
+                email = altered;
+            }
+            stream.add(email);
+        }
+        return stream;
+    }
+
+    private static long time(SpamClassifier classifier, List<byte[]> stream) {
+        long start = System.nanoTime();
+        for (byte[] email : stream) {
+            classifier.isSpam(email, email.length);
+        }
+        return System.nanoTime() - start;
+    }
+}
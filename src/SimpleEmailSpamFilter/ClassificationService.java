@@ -0,0 +1,308 @@
+package SimpleEmailSpamFilter;
+
+import java.io.*;
+import java.net.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.concurrent.*;
+
+/**
+ * Labels a continuous stream of emails over one shared, read-only classifier.
+ *
+ * Messages are framed as a header line "<id> <length>" followed by exactly length bytes of email; for every
+ * message a line "<id> spam" or "<id> ham" is written back, or "<id> error" if it could not be classified. The
+ * reading thread hands each message to a fixed pool of workers and queues the pending result in a bounded queue,
+ * in arrival order; a writing thread takes the results from that queue in the same order, so labels come back in
+ * arrival order however the workers interleave. When the queue is full the reader blocks, and stops reading its
+ * input: that is the backpressure on the sender. A header announcing more than the maximum message size ends the
+ * stream with an IOException before anything is allocated for it, so the queue also bounds the memory held.
+ *
+ * Usage: ClassificationService model.nbm stdin [workers [queue]]
+ *        ClassificationService model.nbm socket port [workers [queue]]
+ *        ClassificationService model.nbm dir path [workers [queue]]
+ *
+ * The socket mode listens on the loopback interface and serves every connection as its own stream; StubSender
+ * feeds it. The dir mode labels every file of a directory as one batch. Metrics go to STDERR.
+ */
+public class ClassificationService {
+    private static final int MAX_MESSAGE_BYTES = 1 << 24;     // the default; the emails of the data sets are < 1 MB
+
+    private final SpamClassifier classifier;
+    private final ExecutorService workers;
+    private final int queueCapacity;
+    private final int maxMessageBytes;
+    private final ServiceMetrics metrics = new ServiceMetrics();
+
+    /**
+     * Create a service.
+     *
+     * @param classifier    the classifier every worker uses
+     * @param workers       the number of worker threads
+     * @param queueCapacity the number of messages that can be read but not yet written back
+     */
+    public ClassificationService(SpamClassifier classifier, int workers, int queueCapacity) {
+        this(classifier, workers, queueCapacity, MAX_MESSAGE_BYTES);
+    }
+
+    /**
+     * Create a service. The queue holds up to queueCapacity * maxMessageBytes bytes of email.
+     *
+     * @param classifier      the classifier every worker uses
+     * @param workers         the number of worker threads
+     * @param queueCapacity   the number of messages that can be read but not yet written back
+     * @param maxMessageBytes the largest message accepted, in bytes
+     */
+    public ClassificationService(SpamClassifier classifier, int workers, int queueCapacity, int maxMessageBytes) {
+        if (workers < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("Need at least one worker and one queue slot");
+        }
+        if (maxMessageBytes < 0) {
+            throw new IllegalArgumentException("The maximum message size cannot be negative");
+        }
+        this.maxMessageBytes = maxMessageBytes;
+        this.classifier = classifier;
+        this.workers = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "classifier");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.queueCapacity = queueCapacity;
+    }
+
+    public ServiceMetrics metrics() {
+        return metrics;
+    }
+
+    // a message that has been read, and the label it is being given
+    private static class Pending {
+        final String id;
+        final long arrival;
+        final Future<Boolean> label;
+
+        Pending(String id, long arrival, Future<Boolean> label) {
+            this.id = id;
+            this.arrival = arrival;
+            this.label = label;
+        }
+    }
+
+    // the end of the stream for the writing thread
+    private static final Pending END = new Pending(null, 0, null);
+
+    /**
+     * Label every message of a stream, until it ends.
+     *
+     * @param in  the framed messages
+     * @param out receives one label line per message, in arrival order
+     * @throws IOException if the stream is not framed properly or cannot be read or written
+     */
+    public void serve(InputStream in, OutputStream out) throws IOException {
+        BlockingQueue<Pending> pending = new ArrayBlockingQueue<>(queueCapacity);
+        FutureTask<Void> writing = startWriter(pending, out);
+
+        DataInputStream input = new DataInputStream(new BufferedInputStream(in));
+        try {
+            String header;
+            while ((header = readLine(input)) != null) {
+                if (header.isEmpty()) {
+                    continue;
+                }
+                String[] parts = header.split(" ");
+                int length;
+                try {
+                    length = Integer.parseInt(parts[parts.length - 1]);
+                } catch (NumberFormatException e) {
+                    throw new IOException("Bad message header: " + header);
+                }
+                if (parts.length != 2 || length < 0) {
+                    throw new IOException("Bad message header: " + header);
+                }
+                if (length > maxMessageBytes) {
+                    throw new IOException("Message of " + length + " bytes is over the maximum of "
+                            + maxMessageBytes + ": " + header);
+                }
+                byte[] doc = new byte[length];
+                input.readFully(doc);
+                long arrival = System.nanoTime();
+                putUninterruptibly(pending,
+                        new Pending(parts[0], arrival, workers.submit(() -> classifier.isSpam(doc, doc.length))));
+            }
+        } finally {
+            putUninterruptibly(pending, END);
+            waitFor(writing);
+        }
+    }
+
+    /**
+     * Label every file of a directory as a batch.
+     *
+     * @param directoryPath the directory
+     * @param out           receives one label line per file, in directory listing order
+     * @throws IOException if the labels cannot be written
+     */
+    public void serveDirectory(String directoryPath, OutputStream out) throws IOException {
+        BlockingQueue<Pending> pending = new ArrayBlockingQueue<>(queueCapacity);
+        FutureTask<Void> writing = startWriter(pending, out);
+        try {
+            for (File file : ParallelTrainer.listFiles(directoryPath)) {
+                long arrival = System.nanoTime();
+                putUninterruptibly(pending,
+                        new Pending(file.getName(), arrival, workers.submit(() -> classifier.isSpam(file))));
+            }
+        } finally {
+            putUninterruptibly(pending, END);
+            waitFor(writing);
+        }
+    }
+
+    /**
+     * Serve every connection to a loopback port as its own stream, each on its own thread, forever.
+     *
+     * @param port the port to listen on
+     * @throws IOException if the port cannot be listened on
+     */
+    public void listen(int port) throws IOException {
+        try (ServerSocket server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+            System.err.println("listening on " + server.getLocalSocketAddress());
+            while (!server.isClosed()) {
+                Socket socket = server.accept();
+                new Thread(() -> {
+                    try (socket) {
+                        serve(socket.getInputStream(), socket.getOutputStream());
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                    System.err.println(metrics);
+                }, "connection").start();
+            }
+        }
+    }
+
+    /**
+     * Stop the workers, once the messages being labelled are done.
+     */
+    public void shutdown() {
+        workers.shutdown();
+    }
+
+    // start the thread writing the labels of the pending messages
+    private FutureTask<Void> startWriter(BlockingQueue<Pending> pending, OutputStream out) {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        FutureTask<Void> writing = new FutureTask<>(() -> {
+            writeLabels(pending, writer);
+            return null;
+        });
+        Thread thread = new Thread(writing, "label-writer");
+        thread.setDaemon(true);
+        thread.start();
+        return writing;
+    }
+
+    // write the label of every pending message, in order, until END. If writing fails, keep draining the queue
+    // so that the reader never blocks on it forever, and throw the failure at the end.
+    private void writeLabels(BlockingQueue<Pending> pending, Writer writer) throws Exception {
+        IOException failure = null;
+        while (true) {
+            Pending next = pending.take();
+            if (next == END) {
+                if (failure == null) {
+                    writer.flush();
+                    return;
+                }
+                throw failure;
+            }
+            Boolean spam;
+            try {
+                spam = next.label.get();
+            } catch (ExecutionException e) {
+                e.getCause().printStackTrace();
+                spam = null;
+            }
+            if (failure == null) {
+                try {
+                    writer.write(next.id + (spam == null ? " error\n" : spam ? " spam\n" : " ham\n"));
+                    if (pending.isEmpty()) {
+                        writer.flush();     // nothing else is ready; don't keep the sender waiting for labels
+                    }
+                } catch (IOException e) {
+                    failure = e;
+                }
+            }
+            if (spam != null) {
+                metrics.record(System.nanoTime() - next.arrival, spam);
+            }
+        }
+    }
+
+    // read an ASCII header line, or null at the end of the stream
+    private static String readLine(DataInputStream input) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = input.read()) >= 0 && c != '\n') {
+            if (c != '\r') {
+                line.append((char) c);
+            }
+        }
+        return c < 0 && line.length() == 0 ? null : line.toString();
+    }
+
+    private static <T> void putUninterruptibly(BlockingQueue<T> queue, T element) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                queue.put(element);
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void waitFor(FutureTask<Void> writing) throws IOException {
+        try {
+            writing.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: ClassificationService model.nbm (stdin | socket port | dir path) "
+                    + "[workers [queue]]");
+            System.exit(1);
+        }
+        NaiveBayesModel model = ModelFile.read(Paths.get(args[0]));
+        int next = args[1].equals("stdin") ? 2 : 3;
+        int workers = args.length > next ? Integer.parseInt(args[next])
+                : Runtime.getRuntime().availableProcessors();
+        int queue = args.length > next + 1 ? Integer.parseInt(args[next + 1]) : 1024;
+        ClassificationService service = new ClassificationService(model, workers, queue);
+
+        switch (args[1]) {
+            case "stdin":
+                service.serve(System.in, System.out);
+                break;
+            case "dir":
+                service.serveDirectory(args[2], System.out);
+                break;
+            case "socket":
+                service.listen(Integer.parseInt(args[2]));
+                break;
+            default:
+                System.err.println("Unknown mode: " + args[1]);
+                System.exit(1);
+        }
+        service.shutdown();
+        System.err.println(service.metrics());
+    }
+}
@@ -0,0 +1,87 @@
+package SimpleEmailSpamFilter;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Scores spam labels against true_labels.txt.
+ *
+ * The labels file has one "name label" line per test email, where label is spam or ham; lines starting with '#'
+ * are comments. Spam is the positive class: precision is the fraction of emails labelled spam that are spam, and
+ * recall the fraction of spam emails labelled spam.
+ */
+public class Evaluation {
+    private int truePositives;
+    private int falsePositives;
+    private int trueNegatives;
+    private int falseNegatives;
+
+    /**
+     * Read the true labels of the test emails.
+     *
+     * @param path the labels file
+     * @return whether each email, by file name, is spam
+     * @throws IOException if the file cannot be read or a line is not a label
+     */
+    public static Map<String, Boolean> readLabels(String path) throws IOException {
+        Map<String, Boolean> labels = new HashMap<>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(path))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] parts = line.split("\\s+");
+                if (parts.length != 2 || !(parts[1].equals("spam") || parts[1].equals("ham"))) {
+                    throw new IOException("Not a label: " + line);
+                }
+                labels.put(parts[0], parts[1].equals("spam"));
+            }
+        }
+        return labels;
+    }
+
+    /**
+     * Count one labelled email.
+     *
+     * @param labelledSpam whether the classifier labelled it spam
+     * @param isSpam       whether it really is spam
+     */
+    public void add(boolean labelledSpam, boolean isSpam) {
+        if (labelledSpam) {
+            if (isSpam) {
+                truePositives++;
+            } else {
+                falsePositives++;
+            }
+        } else {
+            if (isSpam) {
+                falseNegatives++;
+            } else {
+                trueNegatives++;
+            }
+        }
+    }
+
+    public int total() {
+        return truePositives + falsePositives + trueNegatives + falseNegatives;
+    }
+
+    public double accuracy() {
+        return 1.0 * (truePositives + trueNegatives) / total();
+    }
+
+    public double precision() {
+        return truePositives + falsePositives == 0 ? 1.0 : 1.0 * truePositives / (truePositives + falsePositives);
+    }
+
+    public double recall() {
+        return truePositives + falseNegatives == 0 ? 1.0 : 1.0 * truePositives / (truePositives + falseNegatives);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%.4f\t%.4f\t%.4f", accuracy(), precision(), recall());
+    }
+}
@@ -1,26 +1,27 @@
 package SimpleEmailSpamFilter;
 
 import java.io.*;
+import java.nio.file.*;
 import java.util.*;
 
 public class ExperimentMain {
     private static final String TRAINSPAM = "./src/data/train/spam";
     private static final String TRAINHAM = "./src/data/train/ham";
     private static final String TEST = "./src/data/test/";
+    private static final String MODEL = "./src/data/model.nbm";
+    private static final int CACHE_CAPACITY = 4096;   // the number of distinct emails whose labels are kept
 
-    private static Map<String, Double> PwOverSpam;   // stores P(w|S) for each word in all spam emails.
-    private static Map<String, Double> PwOverHam;    // stores P(w|H) for each word in all ham emails.
-    private static final double numOfSpam = 1340.0;  // total number of spam emails
-    private static final double numOfHam = 3317.0;   // total number of ham emails
-    private static final double PofSpam = numOfSpam / (numOfHam + numOfSpam);    // P(S) = # of spam emails / total emails
-    private static final double PofHam = 1 - PofSpam;    // P(H) =  1 - P(S)
+    // stores the number of spam and ham emails, and P(w|S), P(w|H) for each word in all spam and ham emails.
+    private static NaiveBayesModel model;
 
     private static double smooth = 1.0;  // the Laplace smoothing number
 
+    // tokenSet may be called by several training threads at once, and a tokenizer reuses its buffers
+    private static final ThreadLocal<ByteTokenizer> TOKENIZER = ThreadLocal.withInitial(ByteTokenizer::new);
+
     public static void main(String[] args) {
-        // initialize two maps
-        PwOverHam = calculatePwOver(TRAINHAM);
-        PwOverSpam = calculatePwOver(TRAINSPAM);
+        // load the model written by an earlier run, or train it and write it for the next one
+        model = loadOrTrain(Paths.get(MODEL));
 
         // get the words with highest and lowest ratio P(w|S) / P(w|H) respectively.
         getAndPrintRatio();
@@ -86,9 +87,11 @@ public class ExperimentMain {
         File dir = new File(directoryPath);
         File[] directoryListing = dir.listFiles();
         if (directoryListing != null) {
+            // copies of an email are labelled once
+            ClassificationCache cache = new ClassificationCache(model, CACHE_CAPACITY);
             for (File file : directoryListing) {
                 System.out.print(file.toPath().getFileName() + " ");
-                if (isSpam(file)) {
+                if (isSpam(cache, file)) {
                     System.out.println("spam");
                 } else {
                     System.out.println("ham");
@@ -100,8 +103,27 @@ public class ExperimentMain {
         }
     }
 
-    // calculate the P(w|S) or P(w|H) for words in all emails in a given directory path.
-    private static Map<String, Double> calculatePwOver(String path) {
+    // read the model file if there is one; else train the model and write the model file
+    private static NaiveBayesModel loadOrTrain(Path path) {
+        if (Files.exists(path)) {
+            try {
+                return ModelFile.read(path, smooth);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        NaiveBayesModel trained = NaiveBayesModel.train(TRAINHAM, TRAINSPAM, smooth);
+        try {
+            ModelFile.write(trained, path);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return trained;
+    }
+
+    // calculate the P(w|S) or P(w|H) for words in all emails in a given directory path, on a single thread.
+    // ParallelTrainer produces the same map using all cores.
+    static Map<String, Double> calculatePwOver(String path) {
         Map<String, Double> ret = new HashMap<>();
 
         File dir = new File(path);
@@ -139,95 +161,33 @@ public class ExperimentMain {
     }
 
     // get all words in an email file with no duplicate and ignore the "Subject"
-    private static HashSet<String> tokenSet(File file) throws IOException {
-        HashSet<String> tokens = new HashSet<>();
-        Scanner filescan = new Scanner(file);
-        filescan.next(); //Ignoring "Subject"
-        while(filescan.hasNext()) {
-            String word = filescan.next();
-            tokens.add(word);
-        }
-        filescan.close();
-        return tokens;
+    static HashSet<String> tokenSet(File file) throws IOException {
+        return TOKENIZER.get().tokenSet(file);
     }
 
-    // check if an email file is spam. The main algorithm has mentioned before.
-    private static boolean isSpam(File file) {
-        double summationOfLogPofAllWordsGivenS = 0.0;
-        double summationOfLogPofAllWordsGivenH = 0.0;
-        double logPofSpam = Math.log(PofSpam);
-        double logPofHam = Math.log(PofHam);
+    // check if an email file is spam. The main algorithm has mentioned before; NaiveBayesModel implements it.
+    private static boolean isSpam(SpamClassifier classifier, File file) {
         try {
-            Set<String> token = tokenSet(file);
-            for (String word : token) {
-                if (PwOverSpam.containsKey(word)) {
-                    summationOfLogPofAllWordsGivenS = summationOfLogPofAllWordsGivenS + Math.log(PwOverSpam.get(word));
-                } else {
-                    summationOfLogPofAllWordsGivenS += Math.log(smooth / (numOfSpam + smooth * 2));
-                }
-                if (PwOverHam.containsKey(word)) {
-                    summationOfLogPofAllWordsGivenH += Math.log(PwOverHam.get(word));
-                } else {
-                    summationOfLogPofAllWordsGivenH += Math.log(smooth / (numOfHam + smooth * 2));
-                }
-            }
+            return classifier.isSpam(file);
         } catch (IOException e) {
             e.printStackTrace();
         }
-        return logPofSpam + summationOfLogPofAllWordsGivenS > logPofHam + summationOfLogPofAllWordsGivenH;
+        return model.logPofSpam() > model.logPofHam();
     }
 
-    // calculate the ratio of all words and find the max one and the min one
+    // find the words with the lowest and the highest ratio P(w|S) / P(w|H), one bounded pass each
     private static void getAndPrintRatio() {
-        Map<String, Double> map = PwOverSpam;
-        Map<String, Double> map2 = PwOverHam;
-        double min = Double.MAX_VALUE;
-        double max = Double.MIN_VALUE;
-        String w = "";
-        String w2 = "";
-        for (String word : map.keySet()) {
-            if (map2.containsKey(word)) {
-                if ((1.0 * map.get(word)) / (1.0 * map2.get(word)) < min) {
-                    w = word;
-                    min = (1.0 * map.get(word)) / (1.0 * map2.get(word));
-                }
-                if ((1.0 * map.get(word)) / (1.0 * map2.get(word)) > max) {
-                    w2 = word;
-                    max = (1.0 * map.get(word)) / (1.0 * map2.get(word));
-                }
-            } else {
-                if ((1.0 * map.get(word)) / (1.0 / (numOfHam + 2.0)) < min) {
-                    w = word;
-                    min = (1.0 * map.get(word)) / (1.0 / (numOfHam + 2.0));
-                }
-                if ((1.0 * map.get(word)) / (1.0 / (numOfHam + 2.0)) > max) {
-                    w2 = word;
-                    max = (1.0 * map.get(word)) / (1.0 / (numOfHam + 2.0));
-                }
-            }
-        }
-        for (String word : map2.keySet()) {
-            if (map.containsKey(word)) {
-                if ((1.0 * map.get(word)) / (1.0 * map2.get(word)) < min) {
-                    w = word;
-                    min = (1.0 * map.get(word)) / (1.0 * map2.get(word));
-                }
-                if ((1.0 * map.get(word)) / (1.0 * map2.get(word)) > max) {
-                    w2 = word;
-                    max = (1.0 * map.get(word)) / (1.0 * map2.get(word));
-                }
-            } else {
-                if (1.0 / (numOfSpam + 2.0) / (1.0 * map2.get(word)) < min) {
-                    w = word;
-                    min = 1.0 / (numOfSpam + 2.0) / (1.0 * map2.get(word));
-                }
-                if (1.0 / (numOfSpam + 2.0) / (1.0 * map2.get(word)) > max) {
-                    w2 = word;
-                    max = 1.0 / (numOfSpam + 2.0) / (1.0 * map2.get(word));
-                }
-            }
-        }
-        System.out.println("min: word: " + w + " ratio:" + min);
-        System.out.println("max: word: " + w2 + " ratio:" + max);
+        int[] min = FeatureSelection.topHam(model, 1);
+        int[] max = FeatureSelection.topSpam(model, 1);
+        System.out.println("min: word: " + (min.length == 0 ? "" : model.vocabulary().word(min[0]))
+                + " ratio:" + (min.length == 0 ? Double.MAX_VALUE : ratio(min[0])));
+        System.out.println("max: word: " + (max.length == 0 ? "" : model.vocabulary().word(max[0]))
+                + " ratio:" + (max.length == 0 ? Double.MIN_VALUE : ratio(max[0])));
+    }
+
+    // the ratio P(w|S) / P(w|H) of a word
+    private static double ratio(int id) {
+        return ((model.spamCount(id) + smooth) / (model.numOfSpam() + smooth * 2.0))
+                / ((model.hamCount(id) + smooth) / (model.numOfHam() + smooth * 2.0));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,208 @@
+package SimpleEmailSpamFilter;
+
+import java.util.*;
+
+/**
+ * Ranks the words of a NaiveBayesModel by how much evidence they carry, and prunes a model to its best words.
+ *
+ * Every query is one pass over the vocabulary into a bounded heap of (score, id) pairs kept in two primitive
+ * arrays, so finding the top k of n words costs O(n log k) time and O(k) memory, and no word is made a String
+ * unless the caller asks for it. Equal scores rank the smaller id, the word seen first, first.
+ *
+ * Two criteria rank words for pruning:
+ *  - LOG_LIKELIHOOD_RATIO: |log P(w|S) - log P(w|H)|, how far one occurrence moves the score of an email;
+ *  - MUTUAL_INFORMATION: the mutual information between the presence of the word and the class, which also
+ *    weighs how many emails the word occurs in, so a strong but rare word ranks below a common one.
+ */
+public class FeatureSelection {
+    /**
+     * How words are ranked for pruning.
+     */
+    public enum Criterion {
+        LOG_LIKELIHOOD_RATIO,
+        MUTUAL_INFORMATION
+    }
+
+    /**
+     * The strongest spam indicators: the words with the highest log P(w|S) - log P(w|H).
+     *
+     * @param model the model
+     * @param k     the number of words
+     * @return up to k word ids, strongest first
+     */
+    public static int[] topSpam(NaiveBayesModel model, int k) {
+        TopTerms top = new TopTerms(k);
+        for (int id = 0; id < model.vocabulary().size(); id++) {
+            top.offer(logRatio(model, id), id);
+        }
+        return top.ids();
+    }
+
+    /**
+     * The strongest ham indicators: the words with the lowest log P(w|S) - log P(w|H).
+     *
+     * @param model the model
+     * @param k     the number of words
+     * @return up to k word ids, strongest first
+     */
+    public static int[] topHam(NaiveBayesModel model, int k) {
+        TopTerms top = new TopTerms(k);
+        for (int id = 0; id < model.vocabulary().size(); id++) {
+            top.offer(-logRatio(model, id), id);
+        }
+        return top.ids();
+    }
+
+    /**
+     * The most informative words by a criterion.
+     *
+     * @param model     the model
+     * @param n         the number of words
+     * @param criterion how words are ranked
+     * @return up to n word ids, most informative first
+     */
+    public static int[] mostInformative(NaiveBayesModel model, int n, Criterion criterion) {
+        TopTerms top = new TopTerms(n);
+        for (int id = 0; id < model.vocabulary().size(); id++) {
+            top.offer(score(model, id, criterion), id);
+        }
+        return top.ids();
+    }
+
+    /**
+     * Prune a model to its n most informative words. The pruned model skips the words it does not know instead of
+     * scoring them as never seen; its counts and smoothing are those of the model.
+     *
+     * @param model     the model
+     * @param n         the number of words to keep
+     * @param criterion how words are ranked
+     * @return the pruned model
+     */
+    public static NaiveBayesModel prune(NaiveBayesModel model, int n, Criterion criterion) {
+        int[] kept = mostInformative(model, n, criterion);
+        Arrays.sort(kept);      // keep the order of the vocabulary
+        Vocabulary vocabulary = new Vocabulary();
+        int[] spamCounts = new int[kept.length];
+        int[] hamCounts = new int[kept.length];
+        for (int id : kept) {
+            int newId = vocabulary.add(model.vocabulary(), id);
+            spamCounts[newId] = model.spamCount(id);
+            hamCounts[newId] = model.hamCount(id);
+        }
+        return new NaiveBayesModel(vocabulary, spamCounts, hamCounts, model.numOfSpam(), model.numOfHam(),
+                model.smooth(), true);
+    }
+
+    /**
+     * @param model the model
+     * @param id    a word id
+     * @return log P(w|S) - log P(w|H), the log of the ratio P(w|S) / P(w|H)
+     */
+    public static double logRatio(NaiveBayesModel model, int id) {
+        return model.logPwOverSpam(id) - model.logPwOverHam(id);
+    }
+
+    /**
+     * @param model     the model
+     * @param id        a word id
+     * @param criterion how words are ranked
+     * @return the score of the word, higher for more informative words
+     */
+    public static double score(NaiveBayesModel model, int id, Criterion criterion) {
+        if (criterion == Criterion.LOG_LIKELIHOOD_RATIO) {
+            return Math.abs(logRatio(model, id));
+        }
+        double spam = model.numOfSpam();
+        double ham = model.numOfHam();
+        double total = spam + ham;
+        double inSpam = model.spamCount(id);
+        double inHam = model.hamCount(id);
+        double present = inSpam + inHam;
+        return information(inSpam, present, spam, total) + information(inHam, present, ham, total)
+                + information(spam - inSpam, total - present, spam, total)
+                + information(ham - inHam, total - present, ham, total);
+    }
+
+    // one term of the mutual information: p(x, c) log(p(x, c) / (p(x) p(c))) from the counts
+    private static double information(double both, double x, double c, double total) {
+        return both == 0 ? 0.0 : both / total * Math.log(both * total / (x * c));
+    }
+
+    // the k best (score, id) pairs seen, in a min-heap so the worst one kept is the one to replace
+    private static class TopTerms {
+        private final double[] scores;
+        private final int[] ids;
+        private int size = 0;
+
+        TopTerms(int k) {
+            scores = new double[Math.max(0, k)];
+            ids = new int[Math.max(0, k)];
+        }
+
+        void offer(double score, int id) {
+            if (size < scores.length) {
+                scores[size] = score;
+                ids[size] = id;
+                siftUp(size++);
+            } else if (size > 0 && worse(scores[0], ids[0], score, id)) {
+                scores[0] = score;
+                ids[0] = id;
+                siftDown(0);
+            }
+        }
+
+        // the ids, best first; empties the heap
+        int[] ids() {
+            int[] sorted = new int[size];
+            while (size > 0) {
+                sorted[size - 1] = ids[0];
+                size--;
+                scores[0] = scores[size];
+                ids[0] = ids[size];
+                siftDown(0);
+            }
+            return sorted;
+        }
+
+        // whether (s1, id1) ranks below (s2, id2)
+        private static boolean worse(double s1, int id1, double s2, int id2) {
+            return s1 < s2 || (s1 == s2 && id1 > id2);
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (!worse(scores[i], ids[i], scores[parent], ids[parent])) {
+                    return;
+                }
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                int worst = i;
+                for (int child = 2 * i + 1; child <= 2 * i + 2 && child < size; child++) {
+                    if (worse(scores[child], ids[child], scores[worst], ids[worst])) {
+                        worst = child;
+                    }
+                }
+                if (worst == i) {
+                    return;
+                }
+                swap(i, worst);
+                i = worst;
+            }
+        }
+
+        private void swap(int i, int j) {
+            double score = scores[i];
+            scores[i] = scores[j];
+            scores[j] = score;
+            int id = ids[i];
+            ids[i] = ids[j];
+            ids[j] = id;
+        }
+    }
+}
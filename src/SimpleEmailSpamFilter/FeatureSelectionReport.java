@@ -0,0 +1,82 @@
+package SimpleEmailSpamFilter;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Prints the strongest spam and ham indicators of the trained model, then the accuracy-vs-N curves of the model
+ * pruned to its N most informative words by each criterion, scored against true_labels.txt, with the time to
+ * classify a test email held in memory.
+ *
+ * Usage: FeatureSelectionReport [smooth]
+ */
+public class FeatureSelectionReport {
+    private static final String TRAINSPAM = "./src/data/train/spam";
+    private static final String TRAINHAM = "./src/data/train/ham";
+    private static final String TEST = "./src/data/test/";
+    private static final String TRUE_LABELS = "./src/true_labels.txt";
+    private static final int TOP = 10;
+    private static final int[] SIZES = {10, 30, 100, 300, 1000, 3000, 10000, 30000};
+    private static final int ROUNDS = 20;
+
+    public static void main(String[] args) throws IOException {
+        double smooth = args.length >= 1 ? Double.parseDouble(args[0]) : 1.0;
+        NaiveBayesModel model = NaiveBayesModel.train(TRAINHAM, TRAINSPAM, smooth);
+        Map<String, Boolean> truth = Evaluation.readLabels(TRUE_LABELS);
+        File[] test = ParallelTrainer.listFiles(TEST);
+        byte[][] emails = new byte[test.length][];
+        for (int i = 0; i < test.length; i++) {
+            emails[i] = Files.readAllBytes(test[i].toPath());
+        }
+
+        System.out.println("spam indicators:\t" + words(model, FeatureSelection.topSpam(model, TOP)));
+        System.out.println("ham indicators:\t\t" + words(model, FeatureSelection.topHam(model, TOP)));
+
+        System.out.println("criterion\t\tN\taccuracy\tprecision\trecall\tns/doc");
+        System.out.printf("all words\t\t%d\t%s\t%.0f\n", model.vocabulary().size(), evaluate(model, test, truth),
+                nanosPerEmail(model, emails));
+        for (FeatureSelection.Criterion criterion : FeatureSelection.Criterion.values()) {
+            for (int n : SIZES) {
+                NaiveBayesModel pruned = FeatureSelection.prune(model, n, criterion);
+                System.out.printf("%s\t%d\t%s\t%.0f\n", criterion, n, evaluate(pruned, test, truth),
+                        nanosPerEmail(pruned, emails));
+            }
+        }
+    }
+
+    private static String words(NaiveBayesModel model, int[] ids) {
+        StringBuilder words = new StringBuilder();
+        for (int id : ids) {
+            words.append(words.length() == 0 ? "" : " ").append(model.vocabulary().word(id));
+        }
+        return words.toString();
+    }
+
+    private static Evaluation evaluate(NaiveBayesModel model, File[] test, Map<String, Boolean> truth)
+            throws IOException {
+        Evaluation evaluation = new Evaluation();
+        for (File email : test) {
+            Boolean isSpam = truth.get(email.getName());
+            if (isSpam != null) {
+                evaluation.add(model.isSpam(email), isSpam);
+            }
+        }
+        return evaluation;
+    }
+
+    // the best of two timed rounds, the first one warming up
+    private static double nanosPerEmail(NaiveBayesModel model, byte[][] emails) {
+        long best = Long.MAX_VALUE;
+        for (int warm = 0; warm < 2; warm++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < ROUNDS; i++) {
+                for (byte[] email : emails) {
+                    model.isSpam(email, email.length);
+                }
+            }
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return 1.0 * best / ROUNDS / emails.length;
+    }
+}
@@ -2,34 +2,102 @@ package SimpleEmailSpamFilter;
 
 import java.io.*;
 import java.util.*;
+import java.util.stream.*;
 
 public class FindBestSmooth {
     private static final String TRAINSPAM = "./src/data/train/spam";
     private static final String TRAINHAM = "./src/data/train/ham";
     private static final String TEST = "./src/data/test/";
+    private static final String TRUE_LABELS = "./src/true_labels.txt";
 
-    private static Map<String, Double> PwOverSpam;   // stores P(w|S) for each word in all spam emails.
-    private static Map<String, Double> PwOverHam;    // stores P(w|H) for each word in all ham emails.
-    private static final double numOfSpam = 1340.0;  // total number of spam emails
-    private static final double numOfHam = 3317.0;   // total number of ham emails
-    private static final double PofSpam = numOfSpam / (numOfHam + numOfSpam);    // P(S) = # of spam emails / total emails
-    private static final double PofHam = 1 - PofSpam;    // P(H) =  1 - P(S)
+    // the candidate Laplace smoothing numbers: 1, 1/2, 1/4, ... down to 1e-26
+    private static final double[] SMOOTHS = DoubleStream.iterate(1.0, s -> s >= 1.0 / 99999999999999999999999999.0,
+            s -> s / 2.0).toArray();
 
-    private static double smooth;  // the Laplace smoothing number
+    /*
+     * The sweep only needs counts, so the training emails are tokenized once into the raw counts of a
+     * NaiveBayesModel, and every test email once into the ids of its words. Each smoothing number then only
+     * recomputes the log tables of the model and re-scores the id lists in memory; the candidates are evaluated in
+     * parallel, and the result is one table scored against the true labels.
+     */
+    public static void main(String[] args) throws IOException {
+        NaiveBayesModel counts = NaiveBayesModel.train(TRAINHAM, TRAINSPAM, 1.0);
+        List<Document> test = tokenize(TEST, counts.vocabulary());
+        Map<String, Boolean> truth = Evaluation.readLabels(TRUE_LABELS);
+
+        Evaluation[] results = IntStream.range(0, SMOOTHS.length).parallel()
+                .mapToObj(i -> evaluate(counts.withSmooth(SMOOTHS[i]), test, truth))
+                .toArray(Evaluation[]::new);
+
+        System.out.println("smooth\t\t\taccuracy\tprecision\trecall");
+        int best = 0;
+        for (int i = 0; i < SMOOTHS.length; i++) {
+            System.out.println(SMOOTHS[i] + "\t" + results[i]);
+            if (results[i].accuracy() > results[best].accuracy()) {
+                best = i;
+            }
+        }
+        System.out.println("best smooth: " + SMOOTHS[best] + " (accuracy " + results[best].accuracy() + ")");
+    }
 
-    public static void main(String[] args) {
-        for (smooth = 1.0; smooth >= 1.0 / 99999999999999999999999999.0; smooth /= 2.0) {
+    // a test email as the ids of its distinct words in the training vocabulary
+    private static class Document {
+        final String name;
+        final int[] ids;    // in token order, -1 for a word not seen in training
 
-            PwOverHam = calculatePwOver(TRAINHAM);
-            PwOverSpam = calculatePwOver(TRAINSPAM);
+        Document(String name, int[] ids) {
+            this.name = name;
+            this.ids = ids;
+        }
+    }
+
+    // tokenize every email of a directory once
+    private static List<Document> tokenize(String directoryPath, Vocabulary vocabulary) throws IOException {
+        File[] directoryListing = ParallelTrainer.listFiles(directoryPath);
+        ByteTokenizer tokenizer = new ByteTokenizer();
+        Ids found = new Ids(vocabulary);
+        List<Document> documents = new ArrayList<>(directoryListing.length);
+        for (File file : directoryListing) {
+            found.size = 0;
+            tokenizer.tokenize(file, found);
+            documents.add(new Document(file.getName(), Arrays.copyOf(found.ids, found.size)));
+        }
+        return documents;
+    }
+
+    // collects the ids of the words of an email, -1 for the words that have none
+    private static class Ids implements ByteTokenizer.TokenSink {
+        final Vocabulary vocabulary;
+        int[] ids = new int[256];
+        int size;
+
+        Ids(Vocabulary vocabulary) {
+            this.vocabulary = vocabulary;
+        }
+
+        @Override
+        public void token(byte[] buf, int off, int len, int hash) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = vocabulary.find(buf, off, len, hash);
+        }
+    }
 
-            testUnlabelledEmails(TEST);
+    // label every test email with a model and score the labels
+    private static Evaluation evaluate(NaiveBayesModel model, List<Document> test, Map<String, Boolean> truth) {
+        Evaluation evaluation = new Evaluation();
+        for (Document document : test) {
+            Boolean spam = truth.get(document.name);
+            if (spam != null) {
+                evaluation.add(isSpam(model, document), spam);
+            }
         }
+        return evaluation;
     }
 
     /**
-     * Label the unlabelled emails to either spam or ham using the "Naive" Bayse Algorithm.
-     * Results would be printed to STDOUT.
+     * Label an email to either spam or ham using the "Naive" Bayse Algorithm.
      *
      * We check an email by:
      *
@@ -53,100 +121,26 @@ public class FindBestSmooth {
      *
      *
      *
-     * @param directoryPath label all emails in this directory
+     * The sums are taken in token order, as NaiveBayesModel takes them, so that a borderline email gets the label
+     * the model with this smoothing number would give it.
+     *
+     * @param model    the model, with the smoothing number to evaluate
+     * @param document the email
+     * @return true if the email is more likely spam than ham
      */
-    private static void testUnlabelledEmails(String directoryPath) {
-        try {
-            PrintStream out = new PrintStream(new FileOutputStream("./FindBestSmooth/smooth" + smooth + ".txt"));
-            System.setOut(out);
-            System.setOut(out);
-            File dir = new File(directoryPath);
-            File[] directoryListing = dir.listFiles();
-            if (directoryListing != null) {
-                for (File file : directoryListing) {
-                    out.print(file.toPath().getFileName() + " ");
-                    if (isSpam(file)) {
-                        out.println("spam");
-                    } else {
-                        out.println("ham");
-                    }
-                }
-            } else {
-                System.err.println("Error occured!!!!!");
-                System.exit(1);
-            }
-        } catch (FileNotFoundException e) {
-            e.printStackTrace();
-        }
-    }
-
-    private static Map<String, Double> calculatePwOver(String path) {
-        Map<String, Double> ret = new HashMap<>();
-
-        File dir = new File(path);
-        File[] directoryListing = dir.listFiles();
-        if (directoryListing == null) {
-            System.err.println("Path not found.");
-            System.exit(1);
-        }
-        double numFiles = directoryListing.length;
-
-        for (File file : directoryListing) {
-            // Do something with ham file
-            try {
-                Set<String> token = tokenSet(file);
-                for (String word : token) {
-                    if (ret.containsKey(word)) {
-                        ret.put(word, ret.get(word) + 1);
-                    } else {
-                        ret.put(word, 1.0);
-                    }
-                }
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-        }
-
-        for (String word : ret.keySet()) {
-            ret.put(word, (1.0 * (ret.get(word) + smooth)) / ((numFiles + smooth * 2.0) * 1.0));
-        }
-        return ret;
-    }
-
-    private static HashSet<String> tokenSet(File file) throws IOException {
-        HashSet<String> tokens = new HashSet<>();
-        Scanner filescan = new Scanner(file);
-        filescan.next(); //Ignoring "Subject"
-        while(filescan.hasNext()) {
-            String word = filescan.next();
-            tokens.add(word);
-        }
-        filescan.close();
-        return tokens;
-    }
-
-    private static boolean isSpam(File file) {
+    private static boolean isSpam(NaiveBayesModel model, Document document) {
         double summationOfLogPofAllWordsGivenS = 0.0;
         double summationOfLogPofAllWordsGivenH = 0.0;
-        double logPofSpam = Math.log(PofSpam);
-        double logPofHam = Math.log(PofHam);
-        try {
-            Set<String> token = tokenSet(file);
-            for (String word : token) {
-                if (PwOverSpam.containsKey(word)) {
-                    summationOfLogPofAllWordsGivenS = summationOfLogPofAllWordsGivenS + Math.log(PwOverSpam.get(word));
-                } else {
-                    summationOfLogPofAllWordsGivenS += Math.log(smooth / (numOfSpam + smooth * 2));
-                }
-                if (PwOverHam.containsKey(word)) {
-                    summationOfLogPofAllWordsGivenH += Math.log(PwOverHam.get(word));
-                } else {
-                    summationOfLogPofAllWordsGivenH += Math.log(smooth / (numOfHam + smooth * 2));
-                }
+        for (int id : document.ids) {
+            if (id >= 0) {
+                summationOfLogPofAllWordsGivenS += model.logPwOverSpam(id);
+                summationOfLogPofAllWordsGivenH += model.logPwOverHam(id);
+            } else if (!model.skipsUnknown()) {
+                summationOfLogPofAllWordsGivenS += model.logUnseenSpam();
+                summationOfLogPofAllWordsGivenH += model.logUnseenHam();
             }
-        } catch (IOException e) {
-            e.printStackTrace();
         }
-        return logPofSpam + summationOfLogPofAllWordsGivenS > logPofHam + summationOfLogPofAllWordsGivenH;
+        return model.logPofSpam() + summationOfLogPofAllWordsGivenS
+                > model.logPofHam() + summationOfLogPofAllWordsGivenH;
     }
 }
@@ -0,0 +1,267 @@
+package SimpleEmailSpamFilter;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * A Naive Bayes spam model of fixed size: the feature hashing counterpart of NaiveBayesModel.
+ *
+ * There is no vocabulary. Every token is hashed (ByteTokenizer.hash) into one of 2^bits buckets per class, and a
+ * bucket holds the signed sum of the counts of the tokens falling into it: a token adds +1 or -1 according to
+ * one more bit of its hash. The count of a token is read back as its sign times its bucket, clamped to
+ * [0, emails of the class]. Tokens sharing a bucket then add noise that cancels out on average instead of always
+ * inflating the count (the count sketch estimate), so rare tokens do not pick up the weight of frequent ones.
+ *
+ * The memory is two int[2^bits] tables and one log table per class of emails of the class + 1 entries, whatever
+ * the number of distinct tokens, and no String is ever made. The probabilities are those of NaiveBayesModel,
+ * P(w|class) = (count + smooth) / (emails of class + 2 smooth), looked up from the log tables, so classifying costs
+ * one array access per token and no Math.log.
+ *
+ * A model is immutable and can be shared by any number of threads.
+ */
+public class HashedModel implements SpamClassifier {
+    private static final ThreadLocal<ByteTokenizer> TOKENIZER = ThreadLocal.withInitial(ByteTokenizer::new);
+    private static final int MAX_BITS = 30;     // the sign is the top bit of the hash, above every index bit
+
+    private final int bits;
+    private final int mask;
+    private final int[] spamBuckets;    // signed sums of the number of spam emails containing each token
+    private final int[] hamBuckets;     // signed sums of the number of ham emails containing each token
+    private final int numOfSpam;
+    private final int numOfHam;
+    private final double smooth;
+
+    private final double[] logPcountOverSpam;  // log P(w|S) of a token in 0 to numOfSpam spam emails
+    private final double[] logPcountOverHam;   // log P(w|H) of a token in 0 to numOfHam ham emails
+    private final double logPofSpam;
+    private final double logPofHam;
+
+    /**
+     * Build a model from bucket tables. The tables are used as they are, not copied.
+     *
+     * @param spamBuckets the signed spam counts, 2^bits long
+     * @param hamBuckets  the signed ham counts, 2^bits long
+     * @param numOfSpam   total number of spam emails
+     * @param numOfHam    total number of ham emails
+     * @param smooth      the Laplace smoothing number
+     */
+    public HashedModel(int[] spamBuckets, int[] hamBuckets, int numOfSpam, int numOfHam, double smooth) {
+        int size = spamBuckets.length;
+        if (Integer.bitCount(size) != 1 || size > 1 << MAX_BITS || hamBuckets.length != size) {
+            throw new IllegalArgumentException("Need two tables of the same power of two size, up to 2^" + MAX_BITS);
+        }
+        this.bits = Integer.numberOfTrailingZeros(size);
+        this.mask = size - 1;
+        this.spamBuckets = spamBuckets;
+        this.hamBuckets = hamBuckets;
+        this.numOfSpam = numOfSpam;
+        this.numOfHam = numOfHam;
+        this.smooth = smooth;
+
+        logPcountOverSpam = logTable(numOfSpam, smooth);
+        logPcountOverHam = logTable(numOfHam, smooth);
+        double pofSpam = 1.0 * numOfSpam / (numOfHam + numOfSpam);
+        logPofSpam = Math.log(pofSpam);
+        logPofHam = Math.log(1 - pofSpam);
+    }
+
+    // log P(w|class) of a word in count of the emails of the class, for count 0 to emails
+    private static double[] logTable(int emails, double smooth) {
+        double denominator = (emails + smooth * 2.0) * 1.0;
+        double[] table = new double[emails + 1];
+        for (int count = 0; count <= emails; count++) {
+            table[count] = Math.log((1.0 * (count + smooth)) / denominator);
+        }
+        return table;
+    }
+
+    /**
+     * Train a model from the emails of a ham and a spam directory, on the common pool.
+     *
+     * @param hamPath  the directory of the ham training emails
+     * @param spamPath the directory of the spam training emails
+     * @param bits     the log2 of the number of buckets per class, 1 to 30
+     * @param smooth   the Laplace smoothing number
+     * @return the trained model
+     */
+    public static HashedModel train(String hamPath, String spamPath, int bits, double smooth) {
+        return train(hamPath, spamPath, bits, smooth, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Train a model from the emails of a ham and a spam directory.
+     *
+     * @param hamPath  the directory of the ham training emails
+     * @param spamPath the directory of the spam training emails
+     * @param bits     the log2 of the number of buckets per class, 1 to 30
+     * @param smooth   the Laplace smoothing number
+     * @param pool     the pool the emails are tokenized on
+     * @return the trained model
+     */
+    public static HashedModel train(String hamPath, String spamPath, int bits, double smooth, ForkJoinPool pool) {
+        if (bits < 1 || bits > MAX_BITS) {
+            throw new IllegalArgumentException("bits must be 1 to " + MAX_BITS + ": " + bits);
+        }
+        File[] spamFiles = ParallelTrainer.listFiles(spamPath);
+        File[] hamFiles = ParallelTrainer.listFiles(hamPath);
+        return new HashedModel(count(spamFiles, bits, pool), count(hamFiles, bits, pool), spamFiles.length,
+                hamFiles.length, smooth);
+    }
+
+    // the bucket table of the given emails: one slice of the files per thread, each into its own table, then summed
+    private static int[] count(File[] files, int bits, ForkJoinPool pool) {
+        int slices = Math.max(1, Math.min(files.length, pool.getParallelism()));
+        List<Callable<int[]>> tasks = new ArrayList<>(slices);
+        for (int s = 0; s < slices; s++) {
+            int from = (int) ((long) files.length * s / slices);
+            int to = (int) ((long) files.length * (s + 1) / slices);
+            tasks.add(() -> {
+                Buckets buckets = new Buckets(new int[1 << bits]);
+                ByteTokenizer tokenizer = TOKENIZER.get();
+                for (int i = from; i < to; i++) {
+                    try {
+                        tokenizer.tokenize(files[i], buckets);
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                }
+                return buckets.table;
+            });
+        }
+        int[] total = null;
+        for (Future<int[]> slice : pool.invokeAll(tasks)) {
+            int[] table;
+            try {
+                table = slice.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException("Interrupted");
+            } catch (ExecutionException e) {
+                throw new RuntimeException(e.getCause());
+            }
+            if (total == null) {
+                total = table;
+            } else {
+                for (int i = 0; i < total.length; i++) {
+                    total[i] += table[i];
+                }
+            }
+        }
+        return total;
+    }
+
+    // the bucket of a hash
+    private static int index(int hash, int mask) {
+        return hash & mask;
+    }
+
+    // +1 or -1, from the top bit of a hash
+    private static int sign(int hash) {
+        return (hash >> 31) | 1;
+    }
+
+    // adds the signs of the tokens of emails to a bucket table
+    private static class Buckets implements ByteTokenizer.TokenSink {
+        final int[] table;
+        final int mask;
+
+        Buckets(int[] table) {
+            this.table = table;
+            this.mask = table.length - 1;
+        }
+
+        @Override
+        public void token(byte[] buf, int off, int len, int hash) {
+            table[index(hash, mask)] += sign(hash);
+        }
+    }
+
+    /**
+     * Check if an email file is spam.
+     *
+     * @param file the email
+     * @return true if the email is more likely spam than ham
+     * @throws IOException if the file cannot be read
+     */
+    @Override
+    public boolean isSpam(File file) throws IOException {
+        Score score = new Score();
+        TOKENIZER.get().tokenize(file, score);
+        return score.isSpam();
+    }
+
+    /**
+     * Check if an email held in memory is spam.
+     *
+     * @param doc the bytes of the email
+     * @param len the number of bytes of doc in use
+     * @return true if the email is more likely spam than ham
+     */
+    @Override
+    public boolean isSpam(byte[] doc, int len) {
+        Score score = new Score();
+        TOKENIZER.get().tokenize(doc, len, score);
+        return score.isSpam();
+    }
+
+    /**
+     * @param hash the hash of a token, as ByteTokenizer.hash computes it
+     * @return the estimated number of spam emails containing the token
+     */
+    public int spamCount(int hash) {
+        return estimate(spamBuckets, hash, numOfSpam);
+    }
+
+    /**
+     * @param hash the hash of a token, as ByteTokenizer.hash computes it
+     * @return the estimated number of ham emails containing the token
+     */
+    public int hamCount(int hash) {
+        return estimate(hamBuckets, hash, numOfHam);
+    }
+
+    private int estimate(int[] buckets, int hash, int emails) {
+        return Math.max(0, Math.min(emails, sign(hash) * buckets[index(hash, mask)]));
+    }
+
+    // sums log P(w|S) and log P(w|H) over the distinct tokens of an email
+    private class Score implements ByteTokenizer.TokenSink {
+        double summationOfLogPofAllWordsGivenS = 0.0;
+        double summationOfLogPofAllWordsGivenH = 0.0;
+
+        @Override
+        public void token(byte[] buf, int off, int len, int hash) {
+            summationOfLogPofAllWordsGivenS += logPcountOverSpam[spamCount(hash)];
+            summationOfLogPofAllWordsGivenH += logPcountOverHam[hamCount(hash)];
+        }
+
+        boolean isSpam() {
+            return logPofSpam + summationOfLogPofAllWordsGivenS > logPofHam + summationOfLogPofAllWordsGivenH;
+        }
+    }
+
+    /**
+     * @return the bytes of the tables of the model, which is all its memory but a few fields
+     */
+    public long tableBytes() {
+        return 4L * (spamBuckets.length + hamBuckets.length)
+                + 8L * (logPcountOverSpam.length + logPcountOverHam.length);
+    }
+
+    public int bits() {
+        return bits;
+    }
+
+    public int numOfSpam() {
+        return numOfSpam;
+    }
+
+    public int numOfHam() {
+        return numOfHam;
+    }
+
+    public double smooth() {
+        return smooth;
+    }
+}
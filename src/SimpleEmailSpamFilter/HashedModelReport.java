@@ -0,0 +1,59 @@
+package SimpleEmailSpamFilter;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Compares HashedModel with the exact vocabulary NaiveBayesModel, for a range of table sizes: the accuracy,
+ * precision and recall against true_labels.txt, the number of test emails labelled differently from the exact
+ * model, and the heap each model retains.
+ *
+ * Usage: HashedModelReport [smooth]
+ */
+public class HashedModelReport {
+    private static final String TRAINSPAM = "./src/data/train/spam";
+    private static final String TRAINHAM = "./src/data/train/ham";
+    private static final String TEST = "./src/data/test/";
+    private static final String TRUE_LABELS = "./src/true_labels.txt";
+    private static final int[] BITS = {10, 12, 14, 16, 18, 20, 22};
+
+    public static void main(String[] args) throws IOException {
+        double smooth = args.length >= 1 ? Double.parseDouble(args[0]) : 1.0;
+        Map<String, Boolean> truth = Evaluation.readLabels(TRUE_LABELS);
+        File[] test = ParallelTrainer.listFiles(TEST);
+
+        long before = ModelFootprintReport.usedHeap();
+        NaiveBayesModel exact = NaiveBayesModel.train(TRAINHAM, TRAINSPAM, smooth);
+        long exactBytes = ModelFootprintReport.usedHeap() - before;
+        boolean[] exactLabels = new boolean[test.length];
+        Evaluation exactEvaluation = new Evaluation();
+        for (int i = 0; i < test.length; i++) {
+            exactLabels[i] = exact.isSpam(test[i]);
+            add(exactEvaluation, exactLabels[i], test[i], truth);
+        }
+
+        System.out.println("model\t\tbuckets\t\taccuracy\tprecision\trecall\tdiffer\tbytes");
+        System.out.printf("exact\t\t%d words\t%s\t-\t%d\n", exact.vocabulary().size(), exactEvaluation, exactBytes);
+        for (int bits : BITS) {
+            before = ModelFootprintReport.usedHeap();
+            HashedModel hashed = HashedModel.train(TRAINHAM, TRAINSPAM, bits, smooth);
+            long hashedBytes = ModelFootprintReport.usedHeap() - before;
+            Evaluation evaluation = new Evaluation();
+            int differ = 0;
+            for (int i = 0; i < test.length; i++) {
+                boolean label = hashed.isSpam(test[i]);
+                add(evaluation, label, test[i], truth);
+                differ += label != exactLabels[i] ? 1 : 0;
+            }
+            System.out.printf("hashed\t\t2^%d\t\t%s\t%d\t%d (tables %d)\n", bits, evaluation, differ, hashedBytes,
+                    hashed.tableBytes());
+        }
+    }
+
+    private static void add(Evaluation evaluation, boolean label, File email, Map<String, Boolean> truth) {
+        Boolean isSpam = truth.get(email.getName());
+        if (isSpam != null) {
+            evaluation.add(label, isSpam);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package SimpleEmailSpamFilter;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+
+/**
+ * Reads and writes a NaiveBayesModel as a versioned binary file, so that a classifier does not have to re-train
+ * from data/train every time it starts.
+ *
+ * The file holds the raw counts rather than probabilities, so that any Laplace smoothing number can be applied
+ * when it is loaded. All numbers are little-endian:
+ *
+ *      int     MAGIC
+ *      int     VERSION
+ *      int     number of spam emails
+ *      int     number of ham emails
+ *      int     number of words
+ *      int     flags: SKIPS_UNKNOWN if the model skips words it does not know (see FeatureSelection.prune);
+ *              reserved in version 1, whose models all score unknown words as unseen
+ *      double  smoothing number the model was trained with
+ *      int[]   number of spam emails containing each word, one per word
+ *      int[]   number of ham emails containing each word, one per word
+ *      ...     the vocabulary: its open-addressing table, word hashes, word offsets and word bytes
+ *
+ * Version 1 files are still read. A flag this reader does not know is refused rather than ignored, since it
+ * changes how the model labels emails.
+ *
+ * Reading maps the file with FileChannel.map and copies the tables out in bulk. The vocabulary table is stored as
+ * it is, so nothing is rehashed and no String is made while loading.
+ */
+public class ModelFile {
+    private static final int MAGIC = 0x4e424d31;   // "NBM1"
+    private static final int VERSION = 2;     // 2 gave the reserved int of version 1 its flags
+    private static final int HEADER = 6 * 4 + 8;
+    private static final int SKIPS_UNKNOWN = 1;
+    private static final int KNOWN_FLAGS = SKIPS_UNKNOWN;
+
+    /**
+     * Write a model to a file, replacing it if it exists.
+     *
+     * @param model the model
+     * @param path  the file
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(NaiveBayesModel model, Path path) throws IOException {
+        Vocabulary vocabulary = model.vocabulary();
+        int size = vocabulary.size();
+        long length = HEADER + 8L * size + vocabulary.serializedSize();
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("Model too large for one file: " + length + " bytes");
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) length).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putInt(model.numOfSpam());
+        buffer.putInt(model.numOfHam());
+        buffer.putInt(size);
+        buffer.putInt(model.skipsUnknown() ? SKIPS_UNKNOWN : 0);
+        buffer.putDouble(model.smooth());
+        for (int id = 0; id < size; id++) {
+            buffer.putInt(model.spamCount(id));
+        }
+        for (int id = 0; id < size; id++) {
+            buffer.putInt(model.hamCount(id));
+        }
+        vocabulary.write(buffer);
+        buffer.flip();
+
+        // write to a temporary file first, so that a reader never maps a half written model
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Read a model with the smoothing number it was trained with.
+     *
+     * @param path the file
+     * @return the model
+     * @throws IOException if the file cannot be read or is not a model file
+     */
+    public static NaiveBayesModel read(Path path) throws IOException {
+        return read(path, Double.NaN);
+    }
+
+    /**
+     * Read a model and apply another smoothing number to its counts.
+     *
+     * @param path   the file
+     * @param smooth the Laplace smoothing number, or NaN to keep the one the model was trained with
+     * @return the model
+     * @throws IOException if the file cannot be read or is not a model file
+     */
+    public static NaiveBayesModel read(Path path, double smooth) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            ByteBuffer buffer = mapped.order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.remaining() < HEADER || buffer.getInt() != MAGIC) {
+                throw new IOException("Not a model file: " + path);
+            }
+            int version = buffer.getInt();
+            if (version != 1 && version != VERSION) {
+                throw new IOException("Unsupported model version " + version + ": " + path);
+            }
+            int numOfSpam = buffer.getInt();
+            int numOfHam = buffer.getInt();
+            int size = buffer.getInt();
+            int flags = buffer.getInt();
+            if (version == 1) {
+                flags = 0;
+            } else if ((flags & ~KNOWN_FLAGS) != 0) {
+                throw new IOException("Unsupported model flags " + Integer.toHexString(flags) + ": " + path);
+            }
+            double trainedSmooth = buffer.getDouble();
+            if (numOfSpam < 0 || numOfHam < 0 || size < 0 || buffer.remaining() < 8L * size) {
+                throw new IOException("Corrupt model file: " + path);
+            }
+
+            int[] spamCounts = new int[size];
+            int[] hamCounts = new int[size];
+            buffer.asIntBuffer().get(spamCounts);
+            buffer.position(buffer.position() + 4 * size);
+            buffer.asIntBuffer().get(hamCounts);
+            buffer.position(buffer.position() + 4 * size);
+            Vocabulary vocabulary;
+            try {
+                vocabulary = Vocabulary.read(buffer);
+            } catch (RuntimeException e) {
+                throw new IOException("Corrupt model file: " + path, e);
+            }
+            if (vocabulary.size() != size) {
+                throw new IOException("Corrupt model file: " + path);
+            }
+            return new NaiveBayesModel(vocabulary, spamCounts, hamCounts, numOfSpam, numOfHam,
+                    Double.isNaN(smooth) ? trainedSmooth : smooth, (flags & SKIPS_UNKNOWN) != 0);
+        }
+    }
+}
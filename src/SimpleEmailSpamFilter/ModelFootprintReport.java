@@ -0,0 +1,105 @@
+package SimpleEmailSpamFilter;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Compares the heap retained by the two HashMap<String, Double> tables of ExperimentMain with the one retained by
+ * NaiveBayesModel, checks that both label the test emails the same way, and compares their classification time.
+ *
+ * Usage: ModelFootprintReport [hamDir spamDir testDir]
+ */
+public class ModelFootprintReport {
+    private static final String TRAINSPAM = "./src/data/train/spam";
+    private static final String TRAINHAM = "./src/data/train/ham";
+    private static final String TEST = "./src/data/test/";
+    private static final int ROUNDS = 20;
+
+    public static void main(String[] args) throws IOException {
+        String ham = args.length >= 3 ? args[0] : TRAINHAM;
+        String spam = args.length >= 3 ? args[1] : TRAINSPAM;
+        File[] test = ParallelTrainer.listFiles(args.length >= 3 ? args[2] : TEST);
+        double numOfSpam = ParallelTrainer.listFiles(spam).length;
+        double numOfHam = ParallelTrainer.listFiles(ham).length;
+
+        long before = usedHeap();
+        Map<String, Double> pwOverSpam = ParallelTrainer.calculatePwOver(spam, 1.0);
+        Map<String, Double> pwOverHam = ParallelTrainer.calculatePwOver(ham, 1.0);
+        long maps = usedHeap() - before;
+
+        before = usedHeap();
+        NaiveBayesModel model = NaiveBayesModel.train(ham, spam, 1.0);
+        long compact = usedHeap() - before;
+
+        System.out.printf("words:\t\t%d (spam map %d, ham map %d)\n",
+                model.vocabulary().size(), pwOverSpam.size(), pwOverHam.size());
+        System.out.printf("maps:\t\t%d bytes\t(%.1f bytes/word)\n", maps, 1.0 * maps / model.vocabulary().size());
+        System.out.printf("model:\t\t%d bytes\t(%.1f bytes/word)\n", compact,
+                1.0 * compact / model.vocabulary().size());
+        System.out.printf("reduction:\t%.1fx\n", 1.0 * maps / compact);
+
+        int disagree = 0;
+        for (File file : test) {
+            if (model.isSpam(file) != isSpam(file, pwOverSpam, pwOverHam, numOfSpam, numOfHam)) {
+                disagree++;
+            }
+        }
+        System.out.printf("labels:\t\t%d of %d differ\n", disagree, test.length);
+
+        for (int warm = 0; warm < 2; warm++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < ROUNDS; i++) {
+                for (File file : test) {
+                    isSpam(file, pwOverSpam, pwOverHam, numOfSpam, numOfHam);
+                }
+            }
+            long mapTime = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int i = 0; i < ROUNDS; i++) {
+                for (File file : test) {
+                    model.isSpam(file);
+                }
+            }
+            long modelTime = System.nanoTime() - start;
+            if (warm == 1) {
+                System.out.printf("maps isSpam:\t%.0f ns/doc\n", 1.0 * mapTime / ROUNDS / test.length);
+                System.out.printf("model isSpam:\t%.0f ns/doc\n", 1.0 * modelTime / ROUNDS / test.length);
+            }
+        }
+    }
+
+    // used heap once garbage collection has settled
+    static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+        return used;
+    }
+
+    // the map based isSpam of ExperimentMain before NaiveBayesModel
+    private static boolean isSpam(File file, Map<String, Double> PwOverSpam, Map<String, Double> PwOverHam,
+                                  double numOfSpam, double numOfHam) throws IOException {
+        double smooth = 1.0;
+        double PofSpam = numOfSpam / (numOfHam + numOfSpam);
+        double summationOfLogPofAllWordsGivenS = 0.0;
+        double summationOfLogPofAllWordsGivenH = 0.0;
+        double logPofSpam = Math.log(PofSpam);
+        double logPofHam = Math.log(1 - PofSpam);
+        for (String word : ExperimentMain.tokenSet(file)) {
+            if (PwOverSpam.containsKey(word)) {
+                summationOfLogPofAllWordsGivenS = summationOfLogPofAllWordsGivenS + Math.log(PwOverSpam.get(word));
+            } else {
+                summationOfLogPofAllWordsGivenS += Math.log(smooth / (numOfSpam + smooth * 2));
+            }
+            if (PwOverHam.containsKey(word)) {
+                summationOfLogPofAllWordsGivenH += Math.log(PwOverHam.get(word));
+            } else {
+                summationOfLogPofAllWordsGivenH += Math.log(smooth / (numOfHam + smooth * 2));
+            }
+        }
+        return logPofSpam + summationOfLogPofAllWordsGivenS > logPofHam + summationOfLogPofAllWordsGivenH;
+    }
+}
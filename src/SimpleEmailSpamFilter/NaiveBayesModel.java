@@ -0,0 +1,252 @@
+package SimpleEmailSpamFilter;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * A compact, read-only Naive Bayes spam model.
+ *
+ * Instead of one HashMap<String, Double> per class, the model keeps one Vocabulary mapping every training word to
+ * an int id, the raw number of spam and ham emails containing each word in two int[] tables, and log P(w|S) and
+ * log P(w|H) precomputed in two double[] tables indexed by the same id. log P(w|class) of a word that was never
+ * seen is a constant of the class. Classifying an email then costs one hash lookup per distinct token and an
+ * array-indexed sum, and no Math.log at all.
+ *
+ * The probabilities are the ones of ExperimentMain: P(w|class) = (count + smooth) / (emails of class + 2 smooth).
+ * A model pruned to its most informative words (see FeatureSelection) skips the words it does not know instead,
+ * since most of them were seen in training and were only dropped for carrying little evidence.
+ *
+ * A model is immutable and can be shared by any number of threads.
+ */
+public class NaiveBayesModel implements SpamClassifier {
+    private static final ThreadLocal<ByteTokenizer> TOKENIZER = ThreadLocal.withInitial(ByteTokenizer::new);
+
+    private final Vocabulary vocabulary;
+    private final int[] spamCounts;     // number of spam emails containing each word
+    private final int[] hamCounts;      // number of ham emails containing each word
+    private final int numOfSpam;        // total number of spam emails
+    private final int numOfHam;         // total number of ham emails
+    private final double smooth;        // the Laplace smoothing number
+    private final boolean skipsUnknown; // whether words not in the vocabulary are skipped rather than unseen
+
+    private final double[] logPwOverSpam;   // log P(w|S) of each word
+    private final double[] logPwOverHam;    // log P(w|H) of each word
+    private final double logUnseenSpam;     // log P(w|S) of a word in no training email
+    private final double logUnseenHam;      // log P(w|H) of a word in no training email
+    private final double logPofSpam;
+    private final double logPofHam;
+
+    /**
+     * Build a model from raw counts. The tables are used as they are, not copied.
+     *
+     * @param vocabulary the words, with ids 0 to vocabulary.size() - 1
+     * @param spamCounts the number of spam emails containing each word, at least vocabulary.size() long
+     * @param hamCounts  the number of ham emails containing each word, at least vocabulary.size() long
+     * @param numOfSpam  total number of spam emails
+     * @param numOfHam   total number of ham emails
+     * @param smooth     the Laplace smoothing number
+     */
+    public NaiveBayesModel(Vocabulary vocabulary, int[] spamCounts, int[] hamCounts, int numOfSpam, int numOfHam,
+                           double smooth) {
+        this(vocabulary, spamCounts, hamCounts, numOfSpam, numOfHam, smooth, false);
+    }
+
+    /**
+     * Build a model from raw counts. The tables are used as they are, not copied.
+     *
+     * @param vocabulary   the words, with ids 0 to vocabulary.size() - 1
+     * @param spamCounts   the number of spam emails containing each word, at least vocabulary.size() long
+     * @param hamCounts    the number of ham emails containing each word, at least vocabulary.size() long
+     * @param numOfSpam    total number of spam emails
+     * @param numOfHam     total number of ham emails
+     * @param smooth       the Laplace smoothing number
+     * @param skipsUnknown whether words not in the vocabulary are skipped, rather than scored as never seen
+     */
+    public NaiveBayesModel(Vocabulary vocabulary, int[] spamCounts, int[] hamCounts, int numOfSpam, int numOfHam,
+                           double smooth, boolean skipsUnknown) {
+        int size = vocabulary.size();
+        if (spamCounts.length < size || hamCounts.length < size) {
+            throw new IllegalArgumentException("Fewer counts than words");
+        }
+        this.vocabulary = vocabulary;
+        this.spamCounts = spamCounts;
+        this.hamCounts = hamCounts;
+        this.numOfSpam = numOfSpam;
+        this.numOfHam = numOfHam;
+        this.smooth = smooth;
+        this.skipsUnknown = skipsUnknown;
+
+        double spamDenominator = (numOfSpam + smooth * 2.0) * 1.0;
+        double hamDenominator = (numOfHam + smooth * 2.0) * 1.0;
+        logPwOverSpam = new double[size];
+        logPwOverHam = new double[size];
+        for (int id = 0; id < size; id++) {
+            logPwOverSpam[id] = Math.log((1.0 * (spamCounts[id] + smooth)) / spamDenominator);
+            logPwOverHam[id] = Math.log((1.0 * (hamCounts[id] + smooth)) / hamDenominator);
+        }
+        logUnseenSpam = Math.log(smooth / (numOfSpam + smooth * 2));
+        logUnseenHam = Math.log(smooth / (numOfHam + smooth * 2));
+
+        double pofSpam = 1.0 * numOfSpam / (numOfHam + numOfSpam);
+        logPofSpam = Math.log(pofSpam);
+        logPofHam = Math.log(1 - pofSpam);
+    }
+
+    /**
+     * Train a model from the emails of a ham and a spam directory, on the common pool.
+     *
+     * @param hamPath  the directory of the ham training emails
+     * @param spamPath the directory of the spam training emails
+     * @param smooth   the Laplace smoothing number
+     * @return the trained model
+     */
+    public static NaiveBayesModel train(String hamPath, String spamPath, double smooth) {
+        return train(hamPath, spamPath, smooth, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Train a model from the emails of a ham and a spam directory.
+     *
+     * @param hamPath  the directory of the ham training emails
+     * @param spamPath the directory of the spam training emails
+     * @param smooth   the Laplace smoothing number
+     * @param pool     the pool the emails are tokenized on
+     * @return the trained model
+     */
+    public static NaiveBayesModel train(String hamPath, String spamPath, double smooth, ForkJoinPool pool) {
+        File[] spamFiles = ParallelTrainer.listFiles(spamPath);
+        File[] hamFiles = ParallelTrainer.listFiles(hamPath);
+        ParallelTrainer.Counts spam = ParallelTrainer.count(spamFiles, pool);
+        ParallelTrainer.Counts ham = ParallelTrainer.count(hamFiles, pool);
+
+        // the spam vocabulary becomes the shared one, and the ham words are added to it
+        Vocabulary vocabulary = spam.vocabulary;
+        int[] spamCounts = spam.counts;
+        int[] hamCounts = new int[spamCounts.length];
+        for (int hamId = 0; hamId < ham.vocabulary.size(); hamId++) {
+            int id = vocabulary.add(ham.vocabulary, hamId);
+            if (id >= hamCounts.length) {
+                hamCounts = Arrays.copyOf(hamCounts, hamCounts.length * 2);
+                spamCounts = Arrays.copyOf(spamCounts, hamCounts.length);
+            }
+            hamCounts[id] = ham.counts[hamId];
+        }
+        int size = vocabulary.size();
+        return new NaiveBayesModel(vocabulary, Arrays.copyOf(spamCounts, size), Arrays.copyOf(hamCounts, size),
+                spamFiles.length, hamFiles.length, smooth);
+    }
+
+    /**
+     * Get the same model with another smoothing number. The vocabulary and counts are shared, only the log tables
+     * are recomputed.
+     *
+     * @param smooth the Laplace smoothing number
+     * @return the model with the given smoothing number
+     */
+    public NaiveBayesModel withSmooth(double smooth) {
+        return new NaiveBayesModel(vocabulary, spamCounts, hamCounts, numOfSpam, numOfHam, smooth, skipsUnknown);
+    }
+
+    /**
+     * Check if an email file is spam.
+     *
+     * @param file the email
+     * @return true if the email is more likely spam than ham
+     * @throws IOException if the file cannot be read
+     */
+    @Override
+    public boolean isSpam(File file) throws IOException {
+        Score score = new Score();
+        TOKENIZER.get().tokenize(file, score);
+        return score.isSpam();
+    }
+
+    /**
+     * Check if an email held in memory is spam.
+     *
+     * @param doc the bytes of the email
+     * @param len the number of bytes of doc in use
+     * @return true if the email is more likely spam than ham
+     */
+    @Override
+    public boolean isSpam(byte[] doc, int len) {
+        Score score = new Score();
+        TOKENIZER.get().tokenize(doc, len, score);
+        return score.isSpam();
+    }
+
+    // sums log P(w|S) and log P(w|H) over the distinct tokens of an email
+    private class Score implements ByteTokenizer.TokenSink {
+        double summationOfLogPofAllWordsGivenS = 0.0;
+        double summationOfLogPofAllWordsGivenH = 0.0;
+
+        @Override
+        public void token(byte[] buf, int off, int len, int hash) {
+            int id = vocabulary.find(buf, off, len, hash);
+            if (id >= 0) {
+                summationOfLogPofAllWordsGivenS += logPwOverSpam[id];
+                summationOfLogPofAllWordsGivenH += logPwOverHam[id];
+            } else if (!skipsUnknown) {
+                summationOfLogPofAllWordsGivenS += logUnseenSpam;
+                summationOfLogPofAllWordsGivenH += logUnseenHam;
+            }
+        }
+
+        boolean isSpam() {
+            return logPofSpam + summationOfLogPofAllWordsGivenS > logPofHam + summationOfLogPofAllWordsGivenH;
+        }
+    }
+
+    public Vocabulary vocabulary() {
+        return vocabulary;
+    }
+
+    public int spamCount(int id) {
+        return spamCounts[id];
+    }
+
+    public int hamCount(int id) {
+        return hamCounts[id];
+    }
+
+    public int numOfSpam() {
+        return numOfSpam;
+    }
+
+    public int numOfHam() {
+        return numOfHam;
+    }
+
+    public double smooth() {
+        return smooth;
+    }
+
+    public boolean skipsUnknown() {
+        return skipsUnknown;
+    }
+
+    public double logPwOverSpam(int id) {
+        return logPwOverSpam[id];
+    }
+
+    public double logPwOverHam(int id) {
+        return logPwOverHam[id];
+    }
+
+    public double logUnseenSpam() {
+        return logUnseenSpam;
+    }
+
+    public double logUnseenHam() {
+        return logUnseenHam;
+    }
+
+    public double logPofSpam() {
+        return logPofSpam;
+    }
+
+    public double logPofHam() {
+        return logPofHam;
+    }
+}
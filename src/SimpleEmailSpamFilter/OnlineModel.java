@@ -0,0 +1,285 @@
+package SimpleEmailSpamFilter;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.locks.*;
+
+/**
+ * A Naive Bayes spam model that learns one labelled email at a time.
+ *
+ * The model keeps the raw counts only: the number of spam and ham emails, and for every word the number of spam
+ * and ham emails containing it. train(email, label) and untrain(email, label) add or remove the words of one
+ * email, so feedback such as "the user marked this as spam" costs the size of the email and not the size of the
+ * corpus. log P(w|class) = log(count + smooth) - log(emails of class + 2 smooth): the first term is looked up by
+ * count in one table that only grows, by the entries for counts not reached before, and the second is one
+ * Math.log per class per update, so neither an update nor scoring costs anything in the size of the corpus, and
+ * scoring costs no Math.log. The sums are those of a NaiveBayesModel of the same counts, in the same order, but
+ * the model takes the log of the quotient rather than the difference of the logs: the two can differ in the last
+ * bit, and a borderline email can get the other label.
+ *
+ * An update holds the write lock and a classification the read lock, so every isSpam sees the counts either
+ * before or after any update, never halfway through one. Emails are tokenized before taking either lock.
+ */
+public class OnlineModel implements SpamClassifier {
+    private static final ThreadLocal<ByteTokenizer> TOKENIZER = ThreadLocal.withInitial(ByteTokenizer::new);
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Vocabulary vocabulary = new Vocabulary();
+    private int[] spamCounts = new int[1024];
+    private int[] hamCounts = new int[1024];
+    private int numOfSpam;
+    private int numOfHam;
+    private final double smooth;
+    private final boolean skipsUnknown;
+    private volatile long version;
+
+    private double[] logCountPlusSmooth = new double[0];   // log(count + smooth) of every count reached so far
+    private double logSpamDenominator;      // log(numOfSpam + 2 smooth)
+    private double logHamDenominator;       // log(numOfHam + 2 smooth)
+    private double logPofSpam;
+    private double logPofHam;
+
+    /**
+     * Create an empty model.
+     *
+     * @param smooth the Laplace smoothing number
+     */
+    public OnlineModel(double smooth) {
+        this(smooth, false);
+    }
+
+    private OnlineModel(double smooth, boolean skipsUnknown) {
+        this.smooth = smooth;
+        this.skipsUnknown = skipsUnknown;
+        ensureLogs(0);
+        updateLogs();
+    }
+
+    /**
+     * Create a model starting from the counts of a trained one.
+     *
+     * @param model the trained model; its counts are copied
+     */
+    public OnlineModel(NaiveBayesModel model) {
+        this(model.smooth(), model.skipsUnknown());
+        Vocabulary words = model.vocabulary();
+        for (int id = 0; id < words.size(); id++) {
+            int ownId = vocabulary.add(words, id);
+            ensureCapacity(ownId);
+            spamCounts[ownId] = model.spamCount(id);
+            hamCounts[ownId] = model.hamCount(id);
+            ensureLogs(Math.max(spamCounts[ownId], hamCounts[ownId]));
+        }
+        numOfSpam = model.numOfSpam();
+        numOfHam = model.numOfHam();
+        updateLogs();
+    }
+
+    /**
+     * Add a labelled email file to the model.
+     *
+     * @param file   the email
+     * @param isSpam its label
+     * @throws IOException if the file cannot be read
+     */
+    public void train(File file, boolean isSpam) throws IOException {
+        Tokens tokens = new Tokens();
+        TOKENIZER.get().tokenize(file, tokens);
+        update(tokens, isSpam, 1);
+    }
+
+    /**
+     * Add a labelled email held in memory to the model.
+     *
+     * @param doc    the bytes of the email
+     * @param len    the number of bytes of doc in use
+     * @param isSpam its label
+     */
+    public void train(byte[] doc, int len, boolean isSpam) {
+        Tokens tokens = new Tokens();
+        TOKENIZER.get().tokenize(doc, len, tokens);
+        update(tokens, isSpam, 1);
+    }
+
+    /**
+     * Remove an email file that was added with the same label, for instance to correct a wrong label.
+     *
+     * @param file   the email
+     * @param isSpam the label it was added with
+     * @throws IOException              if the file cannot be read
+     * @throws IllegalArgumentException if the model cannot contain the email with that label; nothing is changed
+     */
+    public void untrain(File file, boolean isSpam) throws IOException {
+        Tokens tokens = new Tokens();
+        TOKENIZER.get().tokenize(file, tokens);
+        update(tokens, isSpam, -1);
+    }
+
+    /**
+     * Remove an email held in memory that was added with the same label.
+     *
+     * @param doc    the bytes of the email
+     * @param len    the number of bytes of doc in use
+     * @param isSpam the label it was added with
+     * @throws IllegalArgumentException if the model cannot contain the email with that label; nothing is changed
+     */
+    public void untrain(byte[] doc, int len, boolean isSpam) {
+        Tokens tokens = new Tokens();
+        TOKENIZER.get().tokenize(doc, len, tokens);
+        update(tokens, isSpam, -1);
+    }
+
+    @Override
+    public boolean isSpam(File file) throws IOException {
+        Tokens tokens = new Tokens();
+        TOKENIZER.get().tokenize(file, tokens);
+        return isSpam(tokens);
+    }
+
+    @Override
+    public boolean isSpam(byte[] doc, int len) {
+        Tokens tokens = new Tokens();
+        TOKENIZER.get().tokenize(doc, len, tokens);
+        return isSpam(tokens);
+    }
+
+    /**
+     * @return a number that changes every time the counts change
+     */
+    public long version() {
+        return version;
+    }
+
+    /**
+     * Copy the current counts into a read-only model, for instance to write it with ModelFile.
+     *
+     * @return the model
+     */
+    public NaiveBayesModel snapshot() {
+        lock.readLock().lock();
+        try {
+            Vocabulary words = new Vocabulary();
+            for (int id = 0; id < vocabulary.size(); id++) {
+                words.add(vocabulary, id);
+            }
+            int size = vocabulary.size();
+            return new NaiveBayesModel(words, Arrays.copyOf(spamCounts, size), Arrays.copyOf(hamCounts, size),
+                    numOfSpam, numOfHam, smooth, skipsUnknown);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // add (by = 1) or remove (by = -1) the words of one email of a class
+    private void update(Tokens tokens, boolean isSpam, int by) {
+        lock.writeLock().lock();
+        try {
+            int[] counts = isSpam ? spamCounts : hamCounts;
+            if (by < 0) {
+                // check everything first, so that a failed untrain changes nothing
+                if ((isSpam ? numOfSpam : numOfHam) == 0) {
+                    throw new IllegalArgumentException("No email of that class to remove");
+                }
+                for (int i = 0; i < tokens.size; i++) {
+                    int id = vocabulary.find(tokens.bytes, tokens.offs[i], tokens.lens[i], tokens.hashes[i]);
+                    if (id < 0 || counts[id] == 0) {
+                        throw new IllegalArgumentException("The email was not added with that label");
+                    }
+                }
+            }
+            for (int i = 0; i < tokens.size; i++) {
+                int id = vocabulary.add(tokens.bytes, tokens.offs[i], tokens.lens[i], tokens.hashes[i]);
+                ensureCapacity(id);
+                ensureLogs((isSpam ? spamCounts : hamCounts)[id] += by);   // counts may have been replaced
+            }
+            if (isSpam) {
+                numOfSpam += by;
+            } else {
+                numOfHam += by;
+            }
+            updateLogs();
+            version++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // the decision of NaiveBayesModel on the current counts, up to the rounding of the last bit
+    private boolean isSpam(Tokens tokens) {
+        lock.readLock().lock();
+        try {
+            double summationOfLogPofAllWordsGivenS = 0.0;
+            double summationOfLogPofAllWordsGivenH = 0.0;
+            for (int i = 0; i < tokens.size; i++) {
+                int id = vocabulary.find(tokens.bytes, tokens.offs[i], tokens.lens[i], tokens.hashes[i]);
+                if (id >= 0) {
+                    summationOfLogPofAllWordsGivenS += logCountPlusSmooth[spamCounts[id]] - logSpamDenominator;
+                    summationOfLogPofAllWordsGivenH += logCountPlusSmooth[hamCounts[id]] - logHamDenominator;
+                } else if (!skipsUnknown) {
+                    summationOfLogPofAllWordsGivenS += logCountPlusSmooth[0] - logSpamDenominator;
+                    summationOfLogPofAllWordsGivenH += logCountPlusSmooth[0] - logHamDenominator;
+                }
+            }
+            return logPofSpam + summationOfLogPofAllWordsGivenS > logPofHam + summationOfLogPofAllWordsGivenH;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // the denominators and the priors, after the number of emails of a class changed; under the write lock
+    private void updateLogs() {
+        logSpamDenominator = Math.log((numOfSpam + smooth * 2.0) * 1.0);
+        logHamDenominator = Math.log((numOfHam + smooth * 2.0) * 1.0);
+        double pofSpam = numOfSpam + numOfHam == 0 ? 0.5 : 1.0 * numOfSpam / (numOfHam + numOfSpam);
+        logPofSpam = Math.log(pofSpam);
+        logPofHam = Math.log(1 - pofSpam);
+    }
+
+    // make log(count + smooth) available for counts up to count; the table doubles, so this is amortized O(1)
+    private void ensureLogs(int count) {
+        int reached = logCountPlusSmooth.length;
+        if (count < reached) {
+            return;
+        }
+        logCountPlusSmooth = Arrays.copyOf(logCountPlusSmooth, Math.max(count + 1, Math.max(16, reached * 2)));
+        for (int c = reached; c < logCountPlusSmooth.length; c++) {
+            logCountPlusSmooth[c] = Math.log(c + smooth);
+        }
+    }
+
+    private void ensureCapacity(int id) {
+        if (id >= spamCounts.length) {
+            spamCounts = Arrays.copyOf(spamCounts, Math.max(id + 1, spamCounts.length * 2));
+            hamCounts = Arrays.copyOf(hamCounts, spamCounts.length);
+        }
+    }
+
+    // the distinct tokens of one email, copied one after the other into bytes: the buffer of the tokenizer is only
+    // valid during the call, and is reused for the next file read on the thread
+    private static class Tokens implements ByteTokenizer.TokenSink {
+        byte[] bytes = new byte[4096];
+        int used;
+        int[] offs = new int[256];
+        int[] lens = new int[256];
+        int[] hashes = new int[256];
+        int size;
+
+        @Override
+        public void token(byte[] buf, int off, int len, int hash) {
+            if (size == offs.length) {
+                offs = Arrays.copyOf(offs, size * 2);
+                lens = Arrays.copyOf(lens, size * 2);
+                hashes = Arrays.copyOf(hashes, size * 2);
+            }
+            if (used + len > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(used + len, bytes.length * 2));
+            }
+            System.arraycopy(buf, off, bytes, used, len);
+            offs[size] = used;
+            lens[size] = len;
+            hashes[size] = hash;
+            used += len;
+            size++;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package SimpleEmailSpamFilter;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Computes the same P(w|S) / P(w|H) tables as ExperimentMain.calculatePwOver, but tokenizes the emails of a
+ * directory on all cores.
+ *
+ * The files are split recursively into ranges on a ForkJoinPool. Each leaf range tokenizes its emails with its own
+ * ByteTokenizer and counts the words into its own Vocabulary and int[] table, so nothing is shared and no String
+ * is made while tokenizing; the partial tables are merged as the tasks join.
+ * The smoothing is only applied once all counts are merged, which is why the result is exactly the one of the
+ * sequential version.
+ */
+public class ParallelTrainer {
+    private static final int FILES_PER_TASK = 64;  // leaf size of the recursive split
+
+    /**
+     * Calculate the P(w|S) or P(w|H) for words in all emails in a given directory path, using the common pool.
+     *
+     * @param path   the directory holding the training emails of one class
+     * @param smooth the Laplace smoothing number
+     * @return the map from each word to its smoothed probability
+     */
+    public static Map<String, Double> calculatePwOver(String path, double smooth) {
+        return calculatePwOver(path, smooth, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Calculate the P(w|S) or P(w|H) for words in all emails in a given directory path, using the given pool.
+     *
+     * @param path   the directory holding the training emails of one class
+     * @param smooth the Laplace smoothing number
+     * @param pool   the pool the files are tokenized on
+     * @return the map from each word to its smoothed probability
+     */
+    public static Map<String, Double> calculatePwOver(String path, double smooth, ForkJoinPool pool) {
+        File[] directoryListing = listFiles(path);
+        double numFiles = directoryListing.length;
+
+        Counts counts = count(directoryListing, pool);
+
+        // count and save the P(w|S) or P(w|H) for each word, the same way as the sequential version does
+        Map<String, Double> ret = new HashMap<>(counts.vocabulary.size() * 4 / 3 + 1);
+        for (int id = 0; id < counts.vocabulary.size(); id++) {
+            double count = counts.counts[id];
+            ret.put(counts.vocabulary.word(id), (1.0 * (count + smooth)) / ((numFiles + smooth * 2.0) * 1.0));
+        }
+        return ret;
+    }
+
+    // count, for every word, the number of the given emails containing it
+    static Counts count(File[] files, ForkJoinPool pool) {
+        return pool.invoke(new CountTask(files, 0, files.length));
+    }
+
+    // all files of a directory; exit as the sequential version does if the path is not found
+    static File[] listFiles(String path) {
+        File[] directoryListing = new File(path).listFiles();
+        if (directoryListing == null) {
+            System.err.println("Path not found.");
+            System.exit(1);
+        }
+        return directoryListing;
+    }
+
+    // the number of emails containing each word of a vocabulary, indexed by word id
+    static class Counts implements ByteTokenizer.TokenSink {
+        final Vocabulary vocabulary = new Vocabulary();
+        int[] counts = new int[1024];
+
+        @Override
+        public void token(byte[] buf, int off, int len, int hash) {
+            increment(vocabulary.add(buf, off, len, hash), 1);
+        }
+
+        void increment(int id, int by) {
+            if (id == counts.length) {
+                counts = Arrays.copyOf(counts, id * 2);
+            }
+            counts[id] += by;
+        }
+
+        // fold the smaller table into the larger one
+        static Counts merge(Counts a, Counts b) {
+            if (a.vocabulary.size() < b.vocabulary.size()) {
+                Counts temp = a;
+                a = b;
+                b = temp;
+            }
+            for (int id = 0; id < b.vocabulary.size(); id++) {
+                a.increment(a.vocabulary.add(b.vocabulary, id), b.counts[id]);
+            }
+            return a;
+        }
+    }
+
+    // count, for every word, the number of emails in [from, to) containing it
+    @SuppressWarnings("serial")     // a task is never serialized
+    private static class CountTask extends RecursiveTask<Counts> {
+        private final File[] files;
+        private final int from;
+        private final int to;
+
+        CountTask(File[] files, int from, int to) {
+            this.files = files;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Counts compute() {
+            if (to - from <= FILES_PER_TASK) {
+                return countRange();
+            }
+            int mid = (from + to) >>> 1;
+            CountTask left = new CountTask(files, from, mid);
+            left.fork();
+            Counts right = new CountTask(files, mid, to).compute();
+            return Counts.merge(left.join(), right);
+        }
+
+        private Counts countRange() {
+            Counts partial = new Counts();
+            ByteTokenizer tokenizer = new ByteTokenizer();
+            for (int i = from; i < to; i++) {
+                try {
+                    tokenizer.tokenize(files[i], partial);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+            return partial;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package SimpleEmailSpamFilter;
+
+import java.util.concurrent.atomic.*;
+
+/**
+ * Throughput and latency of a ClassificationService.
+ *
+ * Latencies are kept in a log-linear histogram: every power of two of nanoseconds is split into SUB_BUCKETS
+ * buckets, so a percentile is exact to within 1 / SUB_BUCKETS of its value whatever the number of messages, and
+ * recording one is a single atomic increment.
+ */
+public class ServiceMetrics {
+    private static final int SUB_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(64 * SUB_BUCKETS);
+    private final LongAdder messages = new LongAdder();
+    private final LongAdder spam = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final long start = System.nanoTime();
+
+    /**
+     * Record one labelled message.
+     *
+     * @param nanos  the time from its arrival to its label being written
+     * @param isSpam its label
+     */
+    public void record(long nanos, boolean isSpam) {
+        buckets.incrementAndGet(bucket(Math.max(nanos, 0)));
+        messages.increment();
+        totalNanos.add(nanos);
+        if (isSpam) {
+            spam.increment();
+        }
+    }
+
+    public long messages() {
+        return messages.sum();
+    }
+
+    public long spam() {
+        return spam.sum();
+    }
+
+    /**
+     * @return the messages labelled per second since the metrics were created
+     */
+    public double messagesPerSecond() {
+        return messages.sum() / ((System.nanoTime() - start) / 1e9);
+    }
+
+    public double meanNanos() {
+        long count = messages.sum();
+        return count == 0 ? 0.0 : 1.0 * totalNanos.sum() / count;
+    }
+
+    /**
+     * Get a latency percentile.
+     *
+     * @param percentile between 0 and 100
+     * @return the latency in nanoseconds under which the given percent of the messages were labelled
+     */
+    public long percentileNanos(double percentile) {
+        long[] counts = new long[buckets.length()];
+        long total = 0;
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = buckets.get(i);
+            total += counts[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * total));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return upperBound(i);
+            }
+        }
+        return upperBound(counts.length - 1);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("messages=%d spam=%d rate=%.0f/s mean=%.1fus p50=%.1fus p99=%.1fus",
+                messages(), spam(), messagesPerSecond(), meanNanos() / 1e3,
+                percentileNanos(50) / 1e3, percentileNanos(99) / 1e3);
+    }
+
+    // values below SUB_BUCKETS have a bucket each; above, a power of two is split into SUB_BUCKETS buckets
+    private static int bucket(long nanos) {
+        if (nanos < SUB_BUCKETS) {
+            return (int) nanos;
+        }
+        int magnitude = 63 - Long.numberOfLeadingZeros(nanos);     // >= SUB_BITS
+        int sub = (int) (nanos >>> (magnitude - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (magnitude - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    // the largest value falling into a bucket
+    private static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int magnitude = bucket / SUB_BUCKETS + SUB_BITS - 1;
+        long sub = bucket % SUB_BUCKETS;
+        long low = (1L << magnitude) + (sub << (magnitude - SUB_BITS));
+        return low + (1L << (magnitude - SUB_BITS)) - 1;
+    }
+}
@@ -0,0 +1,26 @@
+package SimpleEmailSpamFilter;
+
+import java.io.*;
+
+/**
+ * Labels emails as spam or ham. Implementations are safe to call from any number of threads.
+ */
+public interface SpamClassifier {
+    /**
+     * Check if an email file is spam.
+     *
+     * @param file the email
+     * @return true if the email is more likely spam than ham
+     * @throws IOException if the file cannot be read
+     */
+    boolean isSpam(File file) throws IOException;
+
+    /**
+     * Check if an email held in memory is spam.
+     *
+     * @param doc the bytes of the email
+     * @param len the number of bytes of doc in use
+     * @return true if the email is more likely spam than ham
+     */
+    boolean isSpam(byte[] doc, int len);
+}
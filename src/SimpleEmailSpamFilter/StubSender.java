@@ -0,0 +1,77 @@
+package SimpleEmailSpamFilter;
+
+import java.io.*;
+import java.net.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Feeds the emails of a directory to a ClassificationService listening on a loopback port, reads the labels back
+ * and checks they come back in the order the emails were sent.
+ *
+ * Usage: StubSender port directory [repeat]
+ */
+public class StubSender {
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: StubSender port directory [repeat]");
+            System.exit(1);
+        }
+        int port = Integer.parseInt(args[0]);
+        File[] files = ParallelTrainer.listFiles(args[1]);
+        int repeat = args.length >= 3 ? Integer.parseInt(args[2]) : 1;
+
+        List<byte[]> docs = new ArrayList<>();
+        for (File file : files) {
+            docs.add(Files.readAllBytes(file.toPath()));
+        }
+
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            long start = System.nanoTime();
+            // send on another thread; the service only reads as fast as it labels
+            Thread sender = new Thread(() -> {
+                try {
+                    OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+                    for (int r = 0; r < repeat; r++) {
+                        for (int i = 0; i < files.length; i++) {
+                            byte[] doc = docs.get(i);
+                            String header = r + "/" + files[i].getName() + " " + doc.length + "\n";
+                            out.write(header.getBytes(StandardCharsets.US_ASCII));
+                            out.write(doc);
+                        }
+                    }
+                    out.flush();
+                    socket.shutdownOutput();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }, "sender");
+            sender.start();
+
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                    StandardCharsets.UTF_8));
+            int received = 0;
+            int spam = 0;
+            String line;
+            while ((line = in.readLine()) != null) {
+                String expected = (received / files.length) + "/" + files[received % files.length].getName();
+                if (!line.startsWith(expected + " ")) {
+                    System.err.println("Out of order: expected " + expected + ", got " + line);
+                    System.exit(1);
+                }
+                if (line.endsWith(" spam")) {
+                    spam++;
+                }
+                received++;
+            }
+            sender.join();
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("%d labels in order, %d spam, %.0f messages/sec\n", received, spam, received / seconds);
+            if (received != files.length * repeat) {
+                System.err.println("Expected " + files.length * repeat + " labels");
+                System.exit(1);
+            }
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package SimpleEmailSpamFilter;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+
+/**
+ * Compares ns/doc and allocated bytes/doc of the Scanner tokenizer with ByteTokenizer, once producing the same
+ * Strings as the Scanner version and once interning the tokens into a Vocabulary without making any String.
+ *
+ * Usage: TokenizerBenchmark [directory...]
+ */
+public class TokenizerBenchmark {
+    private static final String TEST = "./src/data/test/";
+    private static final int ROUNDS = 10;
+
+    public static void main(String[] args) throws IOException {
+        List<File> files = new ArrayList<>();
+        for (String path : args.length == 0 ? new String[] {TEST} : args) {
+            files.addAll(Arrays.asList(ParallelTrainer.listFiles(path)));
+        }
+        ByteTokenizer tokenizer = new ByteTokenizer();
+        Vocabulary vocabulary = new Vocabulary();
+
+        // both tokenizers must agree on every file
+        for (File file : files) {
+            if (!scannerTokenSet(file).equals(tokenizer.tokenSet(file))) {
+                System.err.println("Tokens differ for " + file);
+                System.exit(1);
+            }
+        }
+
+        System.out.printf("%d docs, %d rounds\n", files.size(), ROUNDS);
+        System.out.printf("%-12s\t%10s\t%12s\n", "tokenizer", "ns/doc", "bytes/doc");
+        for (int warm = 0; warm < 2; warm++) {
+            boolean print = warm == 1;
+            measure("scanner", files, print, file -> scannerTokenSet(file).size());
+            measure("bytes", files, print, file -> tokenizer.tokenSet(file).size());
+            measure("interned", files, print,
+                    file -> tokenizer.tokenize(file, (buf, off, len, hash) -> vocabulary.add(buf, off, len, hash)));
+        }
+    }
+
+    private interface Tokenize {
+        int run(File file) throws IOException;
+    }
+
+    private static void measure(String name, List<File> files, boolean print, Tokenize tokenize) throws IOException {
+        long tokens = 0;
+        long bytes = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            for (File file : files) {
+                tokens += tokenize.run(file);
+            }
+        }
+        long time = System.nanoTime() - start;
+        bytes = allocatedBytes() - bytes;
+        if (print) {
+            double docs = 1.0 * ROUNDS * files.size();
+            System.out.printf("%-12s\t%10.0f\t%12.0f\t(%d tokens)\n", name, time / docs, bytes / docs, tokens);
+        }
+    }
+
+    // bytes allocated so far by the current thread
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    // the tokenizer ExperimentMain.tokenSet used before ByteTokenizer
+    private static HashSet<String> scannerTokenSet(File file) throws IOException {
+        HashSet<String> tokens = new HashSet<>();
+        Scanner filescan = new Scanner(file);
+        filescan.next(); //Ignoring "Subject"
+        while(filescan.hasNext()) {
+            String word = filescan.next();
+            tokens.add(word);
+        }
+        filescan.close();
+        return tokens;
+    }
+}
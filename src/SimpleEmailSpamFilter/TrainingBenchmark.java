@@ -0,0 +1,64 @@
+package SimpleEmailSpamFilter;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Compares the training throughput of the sequential ExperimentMain.calculatePwOver with ParallelTrainer, and
+ * checks that both produce exactly the same tables.
+ *
+ * Usage: TrainingBenchmark [hamDir spamDir [rounds [threads]]]
+ */
+public class TrainingBenchmark {
+    private static final String TRAINSPAM = "./src/data/train/spam";
+    private static final String TRAINHAM = "./src/data/train/ham";
+    private static final int WARMUP = 2;
+
+    public static void main(String[] args) {
+        String ham = args.length >= 2 ? args[0] : TRAINHAM;
+        String spam = args.length >= 2 ? args[1] : TRAINSPAM;
+        int rounds = args.length >= 3 ? Integer.parseInt(args[2]) : 5;
+        int threads = args.length >= 4 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        int docs = ParallelTrainer.listFiles(ham).length + ParallelTrainer.listFiles(spam).length;
+        ForkJoinPool pool = new ForkJoinPool(threads);
+
+        // the sequential version always uses the smoothing number of ExperimentMain, which is 1.0
+        Map<String, Double> seqHam = ExperimentMain.calculatePwOver(ham);
+        Map<String, Double> seqSpam = ExperimentMain.calculatePwOver(spam);
+        Map<String, Double> parHam = ParallelTrainer.calculatePwOver(ham, 1.0, pool);
+        Map<String, Double> parSpam = ParallelTrainer.calculatePwOver(spam, 1.0, pool);
+        if (!seqHam.equals(parHam) || !seqSpam.equals(parSpam)) {
+            System.err.println("Parallel tables differ from the sequential ones!");
+            System.exit(1);
+        }
+        System.out.printf("tables identical: %d ham words, %d spam words\n", parHam.size(), parSpam.size());
+
+        for (int i = 0; i < WARMUP; i++) {
+            ExperimentMain.calculatePwOver(ham);
+            ExperimentMain.calculatePwOver(spam);
+            ParallelTrainer.calculatePwOver(ham, 1.0, pool);
+            ParallelTrainer.calculatePwOver(spam, 1.0, pool);
+        }
+
+        long sequential = 0;
+        long parallel = 0;
+        for (int i = 0; i < rounds; i++) {
+            long start = System.nanoTime();
+            ExperimentMain.calculatePwOver(ham);
+            ExperimentMain.calculatePwOver(spam);
+            sequential += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            ParallelTrainer.calculatePwOver(ham, 1.0, pool);
+            ParallelTrainer.calculatePwOver(spam, 1.0, pool);
+            parallel += System.nanoTime() - start;
+        }
+        pool.shutdown();
+
+        double seqRate = docs * rounds / (sequential / 1e9);
+        double parRate = docs * rounds / (parallel / 1e9);
+        System.out.printf("sequential:\t%.0f docs/sec\n", seqRate);
+        System.out.printf("parallel(%d):\t%.0f docs/sec\n", threads, parRate);
+        System.out.printf("speedup:\t%.2fx\n", parRate / seqRate);
+    }
+}
@@ -0,0 +1,221 @@
+package SimpleEmailSpamFilter;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Interns words to dense int ids, 0, 1, 2, ... in order of addition.
+ *
+ * The words are looked up by the byte ranges ByteTokenizer reports, in an open-addressing table of ids, and their
+ * bytes are appended to one shared byte array. A word only becomes a String when word(id) is asked for it, so
+ * looking up or adding a token allocates nothing but the occasional growth of the arrays.
+ *
+ * An instance is not thread safe.
+ */
+public class Vocabulary {
+    private static final int INITIAL_CAPACITY = 1 << 10;    // a power of two
+
+    private int[] table = new int[INITIAL_CAPACITY];    // id + 1 of the word in each slot, 0 if empty
+    private int[] hashes = new int[INITIAL_CAPACITY / 2];   // hash of each id
+    private int[] offsets = new int[INITIAL_CAPACITY / 2 + 1];  // the bytes of id are [offsets[id], offsets[id + 1])
+    private byte[] bytes = new byte[INITIAL_CAPACITY * 8];
+    private String[] words;     // Strings made so far, allocated by the first call to word(id)
+    private int size = 0;
+
+    /**
+     * Create an empty vocabulary.
+     */
+    public Vocabulary() {
+    }
+
+    // a vocabulary over tables read back by ModelFile
+    private Vocabulary(int[] table, int[] hashes, int[] offsets, byte[] bytes, int size) {
+        this.table = table;
+        this.hashes = hashes;
+        this.offsets = offsets;
+        this.bytes = bytes;
+        this.size = size;
+    }
+
+    /**
+     * @return the number of distinct words
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Find the id of a word given as bytes.
+     *
+     * @param buf  the buffer holding the word
+     * @param off  the offset of the word in buf
+     * @param len  the length of the word in bytes
+     * @param hash ByteTokenizer.hash of the word
+     * @return the id of the word, or -1 if it is not in the vocabulary
+     */
+    public int find(byte[] buf, int off, int len, int hash) {
+        int mask = table.length - 1;
+        for (int slot = hash & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+            int id = table[slot] - 1;
+            if (hashes[id] == hash && matches(id, buf, off, len)) {
+                return id;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Find the id of a word.
+     *
+     * @param word the word
+     * @return the id of the word, or -1 if it is not in the vocabulary
+     */
+    public int find(String word) {
+        byte[] buf = word.getBytes(StandardCharsets.UTF_8);
+        return find(buf, 0, buf.length, ByteTokenizer.hash(buf, 0, buf.length));
+    }
+
+    /**
+     * Add a word given as bytes, unless it is already there.
+     *
+     * @param buf  the buffer holding the word
+     * @param off  the offset of the word in buf
+     * @param len  the length of the word in bytes
+     * @param hash ByteTokenizer.hash of the word
+     * @return the id of the word
+     */
+    public int add(byte[] buf, int off, int len, int hash) {
+        int mask = table.length - 1;
+        int slot = hash & mask;
+        for (; table[slot] != 0; slot = (slot + 1) & mask) {
+            int id = table[slot] - 1;
+            if (hashes[id] == hash && matches(id, buf, off, len)) {
+                return id;
+            }
+        }
+
+        int id = size;
+        if (id == hashes.length) {
+            hashes = Arrays.copyOf(hashes, id * 2);
+            offsets = Arrays.copyOf(offsets, id * 2 + 1);
+        }
+        int end = offsets[id] + len;
+        if (end > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, end));
+        }
+        System.arraycopy(buf, off, bytes, offsets[id], len);
+        offsets[id + 1] = end;
+        hashes[id] = hash;
+        table[slot] = id + 1;
+        size++;
+        if (size * 2 > table.length) {
+            rehash(table.length * 2);
+        }
+        return id;
+    }
+
+    /**
+     * Add a word, unless it is already there.
+     *
+     * @param word the word
+     * @return the id of the word
+     */
+    public int add(String word) {
+        byte[] buf = word.getBytes(StandardCharsets.UTF_8);
+        return add(buf, 0, buf.length, ByteTokenizer.hash(buf, 0, buf.length));
+    }
+
+    /**
+     * Add the word with the given id in another vocabulary, unless it is already there.
+     *
+     * @param other the vocabulary holding the word
+     * @param id    the id of the word in other
+     * @return the id of the word in this vocabulary
+     */
+    public int add(Vocabulary other, int id) {
+        int off = other.offsets[id];
+        return add(other.bytes, off, other.offsets[id + 1] - off, other.hashes[id]);
+    }
+
+    /**
+     * Get a word back as a String; the String is made the first time it is asked for.
+     *
+     * @param id the id of the word
+     * @return the word
+     */
+    public String word(int id) {
+        if (id < 0 || id >= size) {
+            throw new IndexOutOfBoundsException("No word with id " + id);
+        }
+        if (words == null || words.length < size) {
+            words = words == null ? new String[hashes.length] : Arrays.copyOf(words, hashes.length);
+        }
+        String word = words[id];
+        if (word == null) {
+            word = new String(bytes, offsets[id], offsets[id + 1] - offsets[id], StandardCharsets.UTF_8);
+            words[id] = word;
+        }
+        return word;
+    }
+
+    // the number of bytes write(buffer) takes
+    long serializedSize() {
+        return 4L * 4 + 4L * table.length + 4L * size + 4L * (size + 1) + offsets[size];
+    }
+
+    // write the tables as they are, so that reading them back needs no rehashing
+    void write(ByteBuffer buffer) {
+        buffer.putInt(size);
+        buffer.putInt(table.length);
+        buffer.putInt(offsets[size]);
+        buffer.putInt(0);   // reserved
+        buffer.asIntBuffer().put(table);
+        buffer.position(buffer.position() + 4 * table.length);
+        buffer.asIntBuffer().put(hashes, 0, size);
+        buffer.position(buffer.position() + 4 * size);
+        buffer.asIntBuffer().put(offsets, 0, size + 1);
+        buffer.position(buffer.position() + 4 * (size + 1));
+        buffer.put(bytes, 0, offsets[size]);
+    }
+
+    // read the tables written by write(buffer)
+    static Vocabulary read(ByteBuffer buffer) {
+        int size = buffer.getInt();
+        int capacity = buffer.getInt();
+        int byteCount = buffer.getInt();
+        buffer.getInt();    // reserved
+        if (size < 0 || capacity < 2 * size || Integer.bitCount(capacity) != 1 || byteCount < 0) {
+            throw new IllegalArgumentException("Corrupt vocabulary header");
+        }
+        int[] table = new int[capacity];
+        int[] hashes = new int[Math.max(size, 1)];
+        int[] offsets = new int[Math.max(size, 1) + 1];
+        byte[] bytes = new byte[Math.max(byteCount, 1)];
+        buffer.asIntBuffer().get(table);
+        buffer.position(buffer.position() + 4 * capacity);
+        buffer.asIntBuffer().get(hashes, 0, size);
+        buffer.position(buffer.position() + 4 * size);
+        buffer.asIntBuffer().get(offsets, 0, size + 1);
+        buffer.position(buffer.position() + 4 * (size + 1));
+        buffer.get(bytes, 0, byteCount);
+        return new Vocabulary(table, hashes, offsets, bytes, size);
+    }
+
+    private boolean matches(int id, byte[] buf, int off, int len) {
+        int start = offsets[id];
+        return offsets[id + 1] - start == len && Arrays.equals(bytes, start, start + len, buf, off, off + len);
+    }
+
+    private void rehash(int capacity) {
+        table = new int[capacity];
+        int mask = capacity - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = hashes[id] & mask;
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = id + 1;
+        }
+    }
+}